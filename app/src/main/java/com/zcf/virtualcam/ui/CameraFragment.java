@@ -30,6 +30,7 @@ public class CameraFragment extends Fragment {
 
     private Switch photoSwitch;
     private Switch videoSwitch;
+    private Switch previewSwitch;
     private EditText photoPathEditText;
     private EditText videoPathEditText;
     private ActivityResultLauncher<Intent> photoPickerLauncher;
@@ -58,6 +59,7 @@ public class CameraFragment extends Fragment {
 
         photoSwitch = view.findViewById(R.id.switch_photo);
         videoSwitch = view.findViewById(R.id.switch_video);
+        previewSwitch = view.findViewById(R.id.switch_preview);
         photoPathEditText = view.findViewById(R.id.edit_photo_path);
         videoPathEditText = view.findViewById(R.id.edit_video_path);
         Button importPhotoButton = view.findViewById(R.id.button_import_photo);
@@ -94,6 +96,7 @@ public class CameraFragment extends Fragment {
             Config updated = Config.builder(base)
                     .setEnablePhoto(photoSwitch.isChecked())
                     .setEnableVideo(videoSwitch.isChecked())
+                    .setEnablePreview(previewSwitch.isChecked())
                     .setPhotoPath(photoPathEditText.getText().toString().trim())
                     .setVideoPath(videoPathEditText.getText().toString().trim())
                     .build();
@@ -111,7 +114,7 @@ public class CameraFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        if (photoSwitch == null || videoSwitch == null || photoPathEditText == null || videoPathEditText == null) {
+        if (photoSwitch == null || videoSwitch == null || previewSwitch == null || photoPathEditText == null || videoPathEditText == null) {
             return;
         }
         bindConfig(ConfigLoader.loadOrDefault());
@@ -122,6 +125,7 @@ public class CameraFragment extends Fragment {
         super.onDestroyView();
         photoSwitch = null;
         videoSwitch = null;
+        previewSwitch = null;
         photoPathEditText = null;
         videoPathEditText = null;
     }
@@ -129,6 +133,7 @@ public class CameraFragment extends Fragment {
     private void bindConfig(@NonNull Config config) {
         photoSwitch.setChecked(config.enablePhoto);
         videoSwitch.setChecked(config.enableVideo);
+        previewSwitch.setChecked(config.enablePreview);
         photoPathEditText.setText(config.photoPath);
         videoPathEditText.setText(config.videoPath);
     }
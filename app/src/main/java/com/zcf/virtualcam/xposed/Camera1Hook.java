@@ -1,16 +1,28 @@
 package com.zcf.virtualcam.xposed;
 
+import android.graphics.ImageFormat;
 import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Camera1Hook {
 
     private static final AtomicBoolean INSTALLED = new AtomicBoolean(false);
 
+    private static final Map<Camera, CameraState> CAMERAS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     private Camera1Hook() {
     }
 
@@ -27,6 +39,11 @@ public final class Camera1Hook {
                     return;
                 }
 
+                if (config.skipCapture && param.thisObject instanceof Camera
+                        && shortCircuit((Camera) param.thisObject, param, config)) {
+                    return;
+                }
+
                 int jpegIndex = findLastJpegCallbackIndex(param.args);
                 if (jpegIndex < 0) {
                     return;
@@ -48,8 +65,8 @@ public final class Camera1Hook {
                             originalCb.onPictureTaken(data, camera);
                             return;
                         }
-                        byte[] replacement = FileOps.readCachedBytes(latest.photoPath, 10 * 1024 * 1024);
-                        if (replacement != null && replacement.length > 0) {
+                        byte[] replacement = deliverableJpeg(latest, stateOf(camera));
+                        if (replacement != null) {
                             originalCb.onPictureTaken(replacement, camera);
                             return;
                         }
@@ -65,6 +82,216 @@ public final class Camera1Hook {
                 };
             }
         });
+
+        XposedBridge.hookAllMethods(Camera.class, "open", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                onOpened(param.getResult(), param.args);
+            }
+        });
+
+        installPreviewHooks();
+    }
+
+    /**
+     * Camera.open 返回后记录事件线程；延迟安装时由触发 Hook 对第一次 open 补调。
+     */
+    static void onOpened(@Nullable Object result, @Nullable Object[] args) {
+        if (!(result instanceof Camera)) {
+            return;
+        }
+        CameraState state = stateOf((Camera) result);
+        Looper looper = Looper.myLooper();
+        state.looper = looper != null ? looper : Looper.getMainLooper();
+    }
+
+    /**
+     * 不触发真实拍摄：立即停止预览，并在相机事件线程上按 shutter → raw → postview → jpeg 的顺序合成回调。
+     * 素材不可用或预览未在运行时返回 false，交给真实 takePicture 处理。
+     */
+    private static boolean shortCircuit(@NonNull Camera camera, @NonNull XC_MethodHook.MethodHookParam param,
+                                        @NonNull Config config) {
+        Object[] args = param.args;
+        if (args == null || (args.length != 3 && args.length != 4)) {
+            return false;
+        }
+        CameraState state = stateOf(camera);
+        if (state.capturing) {
+            param.setThrowable(new RuntimeException("takePicture failed"));
+            return true;
+        }
+        if (!state.previewing) {
+            return false;
+        }
+        byte[] jpeg = deliverableJpeg(config, state);
+        if (jpeg == null) {
+            return false;
+        }
+        Camera.ShutterCallback shutter = args[0] instanceof Camera.ShutterCallback
+                ? (Camera.ShutterCallback) args[0] : null;
+        Camera.PictureCallback raw = args[1] instanceof Camera.PictureCallback
+                ? (Camera.PictureCallback) args[1] : null;
+        Camera.PictureCallback postview = args.length == 4 && args[2] instanceof Camera.PictureCallback
+                ? (Camera.PictureCallback) args[2] : null;
+        Object last = args[args.length - 1];
+        Camera.PictureCallback jpegCb = last instanceof Camera.PictureCallback ? (Camera.PictureCallback) last : null;
+
+        state.capturing = true;
+        camera.stopPreview();
+        param.setResult(null);
+
+        Handler handler = new Handler(state.looper != null ? state.looper : Looper.getMainLooper());
+        handler.post(() -> {
+            try {
+                if (state.released) {
+                    return;
+                }
+                if (shutter != null) {
+                    shutter.onShutter();
+                }
+                if (raw != null) {
+                    raw.onPictureTaken(null, camera);
+                }
+                if (postview != null) {
+                    postview.onPictureTaken(null, camera);
+                }
+                state.capturing = false;
+                if (jpegCb != null) {
+                    jpegCb.onPictureTaken(jpeg, camera);
+                }
+            } catch (Throwable t) {
+                state.capturing = false;
+                Logger.log("Camera1 合成拍照回调异常:", t);
+            }
+        });
+        return true;
+    }
+
+    @Nullable
+    private static byte[] deliverableJpeg(@NonNull Config config, @NonNull CameraState state) {
+        byte[] replacement = replacementJpeg(config, state);
+        if (replacement != null && config.patchExif) {
+            replacement = ExifPatcher.patch(replacement, System.currentTimeMillis(),
+                    ExifPatcher.ORIENTATION_NORMAL, config);
+        }
+        return replacement;
+    }
+
+    @Nullable
+    private static byte[] replacementJpeg(@NonNull Config config, @NonNull CameraState state) {
+        PhotoPlaylist playlist = PhotoPlaylist.of(config);
+        if (playlist != null) {
+            return playlist.take(state.pictureWidth, state.pictureHeight, state.rotation, state.jpegQuality);
+        }
+        FileOps.CachedBytes asset = FileOps.readCachedEntry(config.photoPath, FileOps.MAX_PHOTO_BYTES);
+        if (asset == null || asset.bytes.length == 0) {
+            return null;
+        }
+        return JpegVariants.get(asset, state.pictureWidth, state.pictureHeight,
+                state.rotation, state.jpegQuality);
+    }
+
+    private static void installPreviewHooks() {
+        XC_MethodHook wrapCallback = new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                if (!(param.thisObject instanceof Camera) || param.args == null || param.args.length != 1) {
+                    return;
+                }
+                Object original = param.args[0];
+                if (!(original instanceof Camera.PreviewCallback) || original instanceof PreviewCallbackWrapper) {
+                    return;
+                }
+                param.args[0] = new PreviewCallbackWrapper(
+                        (Camera.PreviewCallback) original, stateOf((Camera) param.thisObject));
+            }
+        };
+        XposedBridge.hookAllMethods(Camera.class, "setPreviewCallback", wrapCallback);
+        XposedBridge.hookAllMethods(Camera.class, "setPreviewCallbackWithBuffer", wrapCallback);
+        XposedBridge.hookAllMethods(Camera.class, "setOneShotPreviewCallback", wrapCallback);
+
+        XposedBridge.hookAllMethods(Camera.class, "setParameters", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.hasThrowable() || !(param.thisObject instanceof Camera) || param.args == null
+                        || param.args.length != 1 || !(param.args[0] instanceof Camera.Parameters)) {
+                    return;
+                }
+                CameraState state = stateOf((Camera) param.thisObject);
+                state.update((Camera.Parameters) param.args[0]);
+                Config config = ConfigLoader.get();
+                if (config.enabled && config.enablePhoto) {
+                    PhotoPlaylist playlist = PhotoPlaylist.of(config);
+                    if (playlist != null) {
+                        playlist.setSpec(state.pictureWidth, state.pictureHeight, state.rotation, state.jpegQuality);
+                        return;
+                    }
+                    JpegVariants.prefetch(config.photoPath, state.pictureWidth, state.pictureHeight,
+                            state.rotation, state.jpegQuality);
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(Camera.class, "startPreview", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.hasThrowable() || !(param.thisObject instanceof Camera)) {
+                    return;
+                }
+                Camera camera = (Camera) param.thisObject;
+                CameraState state = stateOf(camera);
+                state.previewing = true;
+                Config config = ConfigLoader.get();
+                if (!config.enabled || !config.enablePreview) {
+                    return;
+                }
+                if (state.width <= 0) {
+                    try {
+                        state.update(camera.getParameters());
+                    } catch (Throwable t) {
+                        Logger.log("读取预览参数失败:", t);
+                        return;
+                    }
+                }
+                state.frameIndex = 0;
+                if (!config.framesPath.isEmpty()) {
+                    FrameSource.refresh(config);
+                } else {
+                    PreviewFrames.request(config.photoPath, state.width, state.height);
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(Camera.class, "stopPreview", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.thisObject instanceof Camera) {
+                    stateOf((Camera) param.thisObject).previewing = false;
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(Camera.class, "release", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                CameraState state = CAMERAS.remove(param.thisObject);
+                if (state != null) {
+                    state.released = true;
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private static CameraState stateOf(@NonNull Camera camera) {
+        synchronized (CAMERAS) {
+            CameraState state = CAMERAS.get(camera);
+            if (state == null) {
+                state = new CameraState();
+                CAMERAS.put(camera, state);
+            }
+            return state;
+        }
     }
 
     private static int findLastJpegCallbackIndex(Object[] args) {
@@ -78,4 +305,77 @@ public final class Camera1Hook {
         }
         return -1;
     }
+
+    private static final class CameraState {
+        volatile int width;
+        volatile int height;
+        volatile int format = ImageFormat.NV21;
+        int frameIndex;
+        volatile int pictureWidth;
+        volatile int pictureHeight;
+        volatile int rotation;
+        volatile int jpegQuality;
+        volatile Looper looper;
+        volatile boolean previewing;
+        volatile boolean capturing;
+        volatile boolean released;
+
+        void update(Camera.Parameters parameters) {
+            if (parameters == null) {
+                return;
+            }
+            Camera.Size size = parameters.getPreviewSize();
+            if (size != null) {
+                width = size.width;
+                height = size.height;
+            }
+            format = parameters.getPreviewFormat();
+            Camera.Size picture = parameters.getPictureSize();
+            if (picture != null) {
+                pictureWidth = picture.width;
+                pictureHeight = picture.height;
+            }
+            jpegQuality = parameters.getJpegQuality();
+            String value = parameters.get("rotation");
+            if (value != null) {
+                try {
+                    rotation = Integer.parseInt(value);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+    }
+
+    private static final class PreviewCallbackWrapper implements Camera.PreviewCallback {
+        private final Camera.PreviewCallback original;
+        private final CameraState state;
+
+        PreviewCallbackWrapper(Camera.PreviewCallback original, CameraState state) {
+            this.original = original;
+            this.state = state;
+        }
+
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            try {
+                Config config = ConfigLoader.get();
+                if (data != null && config.enabled && config.enablePreview && state.format == ImageFormat.NV21) {
+                    if (!config.framesPath.isEmpty()) {
+                        FrameSource source = FrameSource.current(config);
+                        if (source != null && source.width == state.width && source.height == state.height) {
+                            source.copyNv21(state.frameIndex++, data);
+                        }
+                    } else {
+                        byte[] frame = PreviewFrames.frame(config.photoPath, state.width, state.height);
+                        if (frame != null && data.length >= frame.length) {
+                            System.arraycopy(frame, 0, data, 0, frame.length);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                Logger.log("Camera1 预览帧替换异常:", t);
+            }
+            original.onPreviewFrame(data, camera);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package com.zcf.virtualcam.xposed;
+
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.media.ImageReader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.XposedHelpers;
+
+public final class Camera2Hook {
+
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean(false);
+
+    private static final String SURFACE_PLANE_CLASS = "android.media.ImageReader$SurfaceImage$SurfacePlane";
+
+    private static final Map<Image, ByteBuffer> INJECTED =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static volatile StagedJpeg staged;
+
+    private Camera2Hook() {
+    }
+
+    public static void install() {
+        if (!INSTALLED.compareAndSet(false, true)) {
+            return;
+        }
+
+        Class<?> planeClass = XposedHelpers.findClassIfExists(SURFACE_PLANE_CLASS, ImageReader.class.getClassLoader());
+        Field imageField = planeClass != null ? findImageField(planeClass) : null;
+        if (imageField == null) {
+            Logger.log("未找到 ImageReader 平面实现，跳过 Camera2 Hook");
+            return;
+        }
+
+        XC_MethodHook acquire = new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                Object result = param.getResult();
+                if (!(result instanceof Image)) {
+                    return;
+                }
+                Image image = (Image) result;
+                if (image.getFormat() != ImageFormat.JPEG) {
+                    return;
+                }
+                Config config = ConfigLoader.get();
+                if (!config.enabled || !config.enablePhoto) {
+                    return;
+                }
+                try {
+                    PhotoPlaylist playlist = PhotoPlaylist.of(config);
+                    if (config.patchExif || playlist != null) {
+                        byte[] jpeg = playlist != null
+                                ? playlist.take(image.getWidth(), image.getHeight(), 0, 0)
+                                : variantJpeg(config.photoPath, image.getWidth(), image.getHeight());
+                        if (jpeg != null && config.patchExif) {
+                            jpeg = ExifPatcher.patch(jpeg, System.currentTimeMillis(),
+                                    ExifPatcher.ORIENTATION_NORMAL, config);
+                        }
+                        if (jpeg != null) {
+                            INJECTED.put(image, ByteBuffer.wrap(jpeg).asReadOnlyBuffer());
+                        }
+                        return;
+                    }
+                    ByteBuffer jpeg = stagedJpeg(config.photoPath, image.getWidth(), image.getHeight());
+                    if (jpeg != null) {
+                        INJECTED.put(image, jpeg.duplicate());
+                    }
+                } catch (Throwable t) {
+                    Logger.log("Camera2 准备 JPEG 失败:", t);
+                }
+            }
+        };
+        XposedBridge.hookAllMethods(ImageReader.class, "acquireNextImage", acquire);
+        XposedBridge.hookAllMethods(ImageReader.class, "acquireLatestImage", acquire);
+
+        XposedBridge.hookAllMethods(planeClass, "getBuffer", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                Object image;
+                try {
+                    image = imageField.get(param.thisObject);
+                } catch (IllegalAccessException e) {
+                    return;
+                }
+                if (image == null) {
+                    return;
+                }
+                ByteBuffer jpeg = INJECTED.get(image);
+                if (jpeg != null) {
+                    param.setResult(jpeg);
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(imageField.getType(), "close", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                INJECTED.remove(param.thisObject);
+            }
+        });
+    }
+
+    @Nullable
+    private static Field findImageField(@NonNull Class<?> planeClass) {
+        for (Field field : planeClass.getDeclaredFields()) {
+            if (Image.class.isAssignableFrom(field.getType())) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static byte[] variantJpeg(@NonNull String path, int width, int height) {
+        FileOps.CachedBytes entry = FileOps.readCachedEntry(path, FileOps.MAX_PHOTO_BYTES);
+        if (entry == null || entry.bytes.length == 0) {
+            return null;
+        }
+        return JpegVariants.get(entry, width, height, 0, 0);
+    }
+
+    @Nullable
+    private static ByteBuffer stagedJpeg(@NonNull String path, int width, int height) {
+        byte[] jpeg = variantJpeg(path, width, height);
+        if (jpeg == null) {
+            return null;
+        }
+        StagedJpeg current = staged;
+        if (current == null || current.source != jpeg) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(jpeg.length);
+            direct.put(jpeg);
+            direct.flip();
+            current = new StagedJpeg(jpeg, direct.asReadOnlyBuffer());
+            staged = current;
+        }
+        return current.buffer;
+    }
+
+    private static final class StagedJpeg {
+        @NonNull
+        final byte[] source;
+        @NonNull
+        final ByteBuffer buffer;
+
+        StagedJpeg(@NonNull byte[] source, @NonNull ByteBuffer buffer) {
+            this.source = source;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package com.zcf.virtualcam.xposed;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class Config {
 
     public static final String MODE_ALLOWLIST = "allowlist";
     public static final String MODE_ALL = "all";
 
+    public static final String PLAYLIST_SEQUENTIAL = "sequential";
+    public static final String PLAYLIST_ROUND_ROBIN = "roundrobin";
+    public static final String PLAYLIST_RANDOM = "random";
+
     public final boolean enabled;
     public final boolean enablePhoto;
     public final boolean enableVideo;
@@ -25,45 +35,121 @@ public final class Config {
     public final String videoPath;
     public final double latitude;
     public final double longitude;
+    @NonNull
+    public final Map<String, Profile> profiles;
+    public final long version;
+    public final long cacheBudgetBytes;
+    public final boolean videoHardLink;
+    public final boolean enablePreview;
+    @NonNull
+    public final String framesPath;
+    @NonNull
+    public final String framesFormat;
+    public final int framesWidth;
+    public final int framesHeight;
+    public final boolean patchExif;
+    @NonNull
+    public final String playlistOrder;
+    public final long playlistSeed;
+    public final int prefetchCount;
+    public final boolean skipCapture;
+    public final boolean muxerDropSamples;
+    public final boolean lazyHooks;
+    @NonNull
+    public final String trackPath;
+    public final boolean trackLoop;
+    public final long trackStartMs;
+    public final boolean locationGlobalGetters;
+    public final boolean videoAsyncCommit;
+
+    @NonNull
+    private final Set<String> enabledPackages;
+    @NonNull
+    private final Map<String, Config> resolved;
+
+    private Config(@NonNull Builder b) {
+        this.enabled = b.enabled;
+        this.enablePhoto = b.enablePhoto;
+        this.enableVideo = b.enableVideo;
+        this.enableLocation = b.enableLocation;
+        this.mode = b.mode;
+        this.allowlist = Collections.unmodifiableList(new ArrayList<>(b.allowlist));
+        this.photoPath = b.photoPath;
+        this.videoPath = b.videoPath;
+        this.latitude = b.latitude;
+        this.longitude = b.longitude;
+        this.profiles = Collections.unmodifiableMap(new LinkedHashMap<>(b.profiles));
+        this.version = b.version;
+        this.cacheBudgetBytes = b.cacheBudgetBytes;
+        this.videoHardLink = b.videoHardLink;
+        this.enablePreview = b.enablePreview;
+        this.framesPath = b.framesPath;
+        this.framesFormat = b.framesFormat;
+        this.framesWidth = b.framesWidth;
+        this.framesHeight = b.framesHeight;
+        this.patchExif = b.patchExif;
+        this.playlistOrder = b.playlistOrder;
+        this.playlistSeed = b.playlistSeed;
+        this.prefetchCount = b.prefetchCount;
+        this.skipCapture = b.skipCapture;
+        this.muxerDropSamples = b.muxerDropSamples;
+        this.lazyHooks = b.lazyHooks;
+        this.trackPath = b.trackPath;
+        this.trackLoop = b.trackLoop;
+        this.trackStartMs = b.trackStartMs;
+        this.locationGlobalGetters = b.locationGlobalGetters;
+        this.videoAsyncCommit = b.videoAsyncCommit;
+
+        Set<String> packages = new HashSet<>(allowlist);
+        packages.addAll(profiles.keySet());
+        this.enabledPackages = Collections.unmodifiableSet(packages);
+
+        Map<String, Config> table = new HashMap<>(profiles.size() * 2);
+        for (Map.Entry<String, Profile> e : profiles.entrySet()) {
+            table.put(e.getKey(), new Config(this, e.getValue()));
+        }
+        this.resolved = Collections.unmodifiableMap(table);
+    }
 
-    public Config(
-            boolean enabled,
-            boolean enablePhoto,
-            boolean enableVideo,
-            boolean enableLocation,
-            @NonNull String mode,
-            @NonNull List<String> allowlist,
-            @NonNull String photoPath,
-            @NonNull String videoPath,
-            double latitude,
-            double longitude
-    ) {
-        this.enabled = enabled;
-        this.enablePhoto = enablePhoto;
-        this.enableVideo = enableVideo;
-        this.enableLocation = enableLocation;
-        this.mode = mode;
-        this.allowlist = Collections.unmodifiableList(new ArrayList<>(allowlist));
-        this.photoPath = photoPath;
-        this.videoPath = videoPath;
-        this.latitude = latitude;
-        this.longitude = longitude;
+    private Config(@NonNull Config base, @NonNull Profile profile) {
+        this.enabled = base.enabled;
+        this.enablePhoto = profile.enablePhoto != null ? profile.enablePhoto : base.enablePhoto;
+        this.enableVideo = profile.enableVideo != null ? profile.enableVideo : base.enableVideo;
+        this.enableLocation = profile.enableLocation != null ? profile.enableLocation : base.enableLocation;
+        this.mode = base.mode;
+        this.allowlist = base.allowlist;
+        this.photoPath = profile.photoPath != null ? profile.photoPath : base.photoPath;
+        this.videoPath = profile.videoPath != null ? profile.videoPath : base.videoPath;
+        this.latitude = profile.latitude != null ? profile.latitude : base.latitude;
+        this.longitude = profile.longitude != null ? profile.longitude : base.longitude;
+        this.profiles = base.profiles;
+        this.version = base.version;
+        this.cacheBudgetBytes = base.cacheBudgetBytes;
+        this.videoHardLink = base.videoHardLink;
+        this.enablePreview = base.enablePreview;
+        this.framesPath = base.framesPath;
+        this.framesFormat = base.framesFormat;
+        this.framesWidth = base.framesWidth;
+        this.framesHeight = base.framesHeight;
+        this.patchExif = base.patchExif;
+        this.playlistOrder = base.playlistOrder;
+        this.playlistSeed = base.playlistSeed;
+        this.prefetchCount = base.prefetchCount;
+        this.skipCapture = base.skipCapture;
+        this.muxerDropSamples = base.muxerDropSamples;
+        this.lazyHooks = base.lazyHooks;
+        this.trackPath = base.trackPath;
+        this.trackLoop = base.trackLoop;
+        this.trackStartMs = base.trackStartMs;
+        this.locationGlobalGetters = base.locationGlobalGetters;
+        this.videoAsyncCommit = base.videoAsyncCommit;
+        this.enabledPackages = base.enabledPackages;
+        this.resolved = Collections.emptyMap();
     }
 
     @NonNull
     public static Config defaultDisabled() {
-        return new Config(
-                false,
-                true,
-                true,
-                false,
-                MODE_ALLOWLIST,
-                Collections.emptyList(),
-                ConfigLoader.DEFAULT_PHOTO_PATH,
-                ConfigLoader.DEFAULT_VIDEO_PATH,
-                ConfigLoader.DEFAULT_LATITUDE,
-                ConfigLoader.DEFAULT_LONGITUDE
-        );
+        return builder().build();
     }
 
     public boolean isPackageEnabled(@NonNull String packageName) {
@@ -73,12 +159,26 @@ public final class Config {
         if (MODE_ALL.equals(mode)) {
             return true;
         }
-        for (String pkg : allowlist) {
-            if (packageName.equals(pkg)) {
-                return true;
-            }
+        return enabledPackages.contains(packageName);
+    }
+
+    @NonNull
+    Set<String> getEnabledPackages() {
+        return enabledPackages;
+    }
+
+    @NonNull
+    public Config resolve(@Nullable String packageName) {
+        if (packageName == null) {
+            return this;
         }
-        return false;
+        Config profile = resolved.get(packageName);
+        return profile != null ? profile : this;
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
     }
 
     @NonNull
@@ -86,6 +186,41 @@ public final class Config {
         return new Builder(base);
     }
 
+    public static final class Profile {
+        @Nullable
+        public final Boolean enablePhoto;
+        @Nullable
+        public final Boolean enableVideo;
+        @Nullable
+        public final Boolean enableLocation;
+        @Nullable
+        public final String photoPath;
+        @Nullable
+        public final String videoPath;
+        @Nullable
+        public final Double latitude;
+        @Nullable
+        public final Double longitude;
+
+        public Profile(
+                @Nullable Boolean enablePhoto,
+                @Nullable Boolean enableVideo,
+                @Nullable Boolean enableLocation,
+                @Nullable String photoPath,
+                @Nullable String videoPath,
+                @Nullable Double latitude,
+                @Nullable Double longitude
+        ) {
+            this.enablePhoto = enablePhoto;
+            this.enableVideo = enableVideo;
+            this.enableLocation = enableLocation;
+            this.photoPath = photoPath;
+            this.videoPath = videoPath;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
     public static final class Builder {
         private boolean enabled;
         private boolean enablePhoto;
@@ -97,6 +232,61 @@ public final class Config {
         private String videoPath;
         private double latitude;
         private double longitude;
+        private Map<String, Profile> profiles;
+        private long version;
+        private long cacheBudgetBytes;
+        private boolean videoHardLink;
+        private boolean enablePreview;
+        private String framesPath;
+        private String framesFormat;
+        private int framesWidth;
+        private int framesHeight;
+        private boolean patchExif;
+        private String playlistOrder;
+        private long playlistSeed;
+        private int prefetchCount;
+        private boolean skipCapture;
+        private boolean muxerDropSamples;
+        private boolean lazyHooks;
+        private String trackPath;
+        private boolean trackLoop;
+        private long trackStartMs;
+        private boolean locationGlobalGetters;
+        private boolean videoAsyncCommit;
+
+        private Builder() {
+            this.enabled = false;
+            this.enablePhoto = true;
+            this.enableVideo = true;
+            this.enableLocation = false;
+            this.mode = MODE_ALLOWLIST;
+            this.allowlist = new ArrayList<>();
+            this.photoPath = ConfigLoader.DEFAULT_PHOTO_PATH;
+            this.videoPath = ConfigLoader.DEFAULT_VIDEO_PATH;
+            this.latitude = ConfigLoader.DEFAULT_LATITUDE;
+            this.longitude = ConfigLoader.DEFAULT_LONGITUDE;
+            this.profiles = new LinkedHashMap<>();
+            this.version = 0L;
+            this.cacheBudgetBytes = ConfigLoader.DEFAULT_CACHE_BUDGET_BYTES;
+            this.videoHardLink = false;
+            this.enablePreview = false;
+            this.framesPath = "";
+            this.framesFormat = FrameSource.FORMAT_Y4M;
+            this.framesWidth = 0;
+            this.framesHeight = 0;
+            this.patchExif = true;
+            this.playlistOrder = PLAYLIST_ROUND_ROBIN;
+            this.playlistSeed = 0L;
+            this.prefetchCount = 4;
+            this.skipCapture = false;
+            this.muxerDropSamples = false;
+            this.lazyHooks = false;
+            this.trackPath = "";
+            this.trackLoop = true;
+            this.trackStartMs = 0L;
+            this.locationGlobalGetters = false;
+            this.videoAsyncCommit = false;
+        }
 
         private Builder(@NonNull Config base) {
             this.enabled = base.enabled;
@@ -109,6 +299,27 @@ public final class Config {
             this.videoPath = base.videoPath;
             this.latitude = base.latitude;
             this.longitude = base.longitude;
+            this.profiles = new LinkedHashMap<>(base.profiles);
+            this.version = base.version;
+            this.cacheBudgetBytes = base.cacheBudgetBytes;
+            this.videoHardLink = base.videoHardLink;
+            this.enablePreview = base.enablePreview;
+            this.framesPath = base.framesPath;
+            this.framesFormat = base.framesFormat;
+            this.framesWidth = base.framesWidth;
+            this.framesHeight = base.framesHeight;
+            this.patchExif = base.patchExif;
+            this.playlistOrder = base.playlistOrder;
+            this.playlistSeed = base.playlistSeed;
+            this.prefetchCount = base.prefetchCount;
+            this.skipCapture = base.skipCapture;
+            this.muxerDropSamples = base.muxerDropSamples;
+            this.lazyHooks = base.lazyHooks;
+            this.trackPath = base.trackPath;
+            this.trackLoop = base.trackLoop;
+            this.trackStartMs = base.trackStartMs;
+            this.locationGlobalGetters = base.locationGlobalGetters;
+            this.videoAsyncCommit = base.videoAsyncCommit;
         }
 
         @NonNull
@@ -171,20 +382,135 @@ public final class Config {
             return this;
         }
 
+        @NonNull
+        public Builder setProfiles(@NonNull Map<String, Profile> profiles) {
+            this.profiles = new LinkedHashMap<>(profiles);
+            return this;
+        }
+
+        @NonNull
+        public Builder setVersion(long version) {
+            this.version = version;
+            return this;
+        }
+
+        @NonNull
+        public Builder setCacheBudgetBytes(long cacheBudgetBytes) {
+            this.cacheBudgetBytes = cacheBudgetBytes;
+            return this;
+        }
+
+        @NonNull
+        public Builder setVideoHardLink(boolean videoHardLink) {
+            this.videoHardLink = videoHardLink;
+            return this;
+        }
+
+        @NonNull
+        public Builder setEnablePreview(boolean enablePreview) {
+            this.enablePreview = enablePreview;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFramesPath(@NonNull String framesPath) {
+            this.framesPath = framesPath;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFramesFormat(@NonNull String framesFormat) {
+            this.framesFormat = framesFormat;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFramesWidth(int framesWidth) {
+            this.framesWidth = framesWidth;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFramesHeight(int framesHeight) {
+            this.framesHeight = framesHeight;
+            return this;
+        }
+
+        @NonNull
+        public Builder setPatchExif(boolean patchExif) {
+            this.patchExif = patchExif;
+            return this;
+        }
+
+        @NonNull
+        public Builder setPlaylistOrder(@NonNull String playlistOrder) {
+            this.playlistOrder = playlistOrder;
+            return this;
+        }
+
+        @NonNull
+        public Builder setPlaylistSeed(long playlistSeed) {
+            this.playlistSeed = playlistSeed;
+            return this;
+        }
+
+        @NonNull
+        public Builder setPrefetchCount(int prefetchCount) {
+            this.prefetchCount = prefetchCount;
+            return this;
+        }
+
+        @NonNull
+        public Builder setSkipCapture(boolean skipCapture) {
+            this.skipCapture = skipCapture;
+            return this;
+        }
+
+        @NonNull
+        public Builder setMuxerDropSamples(boolean muxerDropSamples) {
+            this.muxerDropSamples = muxerDropSamples;
+            return this;
+        }
+
+        @NonNull
+        public Builder setLazyHooks(boolean lazyHooks) {
+            this.lazyHooks = lazyHooks;
+            return this;
+        }
+
+        @NonNull
+        public Builder setTrackPath(@NonNull String trackPath) {
+            this.trackPath = trackPath;
+            return this;
+        }
+
+        @NonNull
+        public Builder setTrackLoop(boolean trackLoop) {
+            this.trackLoop = trackLoop;
+            return this;
+        }
+
+        @NonNull
+        public Builder setTrackStartMs(long trackStartMs) {
+            this.trackStartMs = trackStartMs;
+            return this;
+        }
+
+        @NonNull
+        public Builder setLocationGlobalGetters(boolean locationGlobalGetters) {
+            this.locationGlobalGetters = locationGlobalGetters;
+            return this;
+        }
+
+        @NonNull
+        public Builder setVideoAsyncCommit(boolean videoAsyncCommit) {
+            this.videoAsyncCommit = videoAsyncCommit;
+            return this;
+        }
+
         @NonNull
         public Config build() {
-            return new Config(
-                    enabled,
-                    enablePhoto,
-                    enableVideo,
-                    enableLocation,
-                    mode,
-                    allowlist,
-                    photoPath,
-                    videoPath,
-                    latitude,
-                    longitude
-            );
+            return new Config(this);
         }
     }
 }
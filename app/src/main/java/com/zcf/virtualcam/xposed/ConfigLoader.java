@@ -1,5 +1,6 @@
 package com.zcf.virtualcam.xposed;
 
+import android.os.FileObserver;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
@@ -10,53 +11,215 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ConfigLoader {
 
     public static final String DEFAULT_DIR = "/sdcard/VirtualCam";
     public static final String DEFAULT_CONFIG_PATH = DEFAULT_DIR + "/config.json";
+    public static final String DEFAULT_SNAPSHOT_PATH = DEFAULT_DIR + "/config.bin";
     public static final String DEFAULT_PHOTO_PATH = DEFAULT_DIR + "/photo.jpg";
     public static final String DEFAULT_VIDEO_PATH = DEFAULT_DIR + "/video.mp4";
     public static final double DEFAULT_LATITUDE = 0.0d;
     public static final double DEFAULT_LONGITUDE = 0.0d;
+    public static final long DEFAULT_CACHE_BUDGET_BYTES = 32L * 1024 * 1024;
 
     private static final long MIN_RELOAD_INTERVAL_MS = 500;
+    // FUSE/sdcardfs 上的 inotify 不一定能看到其他进程的写入，监听时仍保留一个粗粒度的 stat 轮询兜底
+    private static final long WATCHED_RELOAD_INTERVAL_MS = 3000;
+
+    private static final long NO_GENERATION = -1L;
+    private static final String CONFIG_FILE_NAME = "config.json";
+    private static final String SNAPSHOT_FILE_NAME = "config.bin";
+
+    private static final AtomicInteger FILE_EVENTS = new AtomicInteger();
 
     private static volatile Cached cached;
+    private static volatile ConfigSnapshot.Reader snapshot;
+    private static volatile ConfigWatcher watcher;
+    private static volatile long lastSwitchLatencyMs = -1L;
+    private static volatile String packageName;
+    private static boolean watchAttempted;
 
     private ConfigLoader() {
     }
 
     public static Config get() {
         Cached local = cached;
-        long now = SystemClock.uptimeMillis();
-        if (local != null && (now - local.lastCheckedAtMs) < MIN_RELOAD_INTERVAL_MS) {
-            return local.config;
+        if (local != null && isCurrent(local)) {
+            return local.effective;
+        }
+        return reload(local);
+    }
+
+    public static void setPackageName(@Nullable String name) {
+        synchronized (ConfigLoader.class) {
+            packageName = name;
+            cached = null;
         }
+    }
+
+    /**
+     * 进程启动时的廉价门控：只读 config.bin 头部与门控表，不解析配置；没有可用快照时返回 true，交给完整配置判断。
+     */
+    public static boolean mayHookPackage(@NonNull String name) {
+        ConfigSnapshot.Reader reader = snapshot;
+        if (reader == null) {
+            reader = ConfigSnapshot.open(new File(DEFAULT_SNAPSHOT_PATH));
+            if (reader == null) {
+                return true;
+            }
+            snapshot = reader;
+        }
+        return reader.mayEnable(name);
+    }
+
+    public static long getLastSwitchLatencyMs() {
+        return lastSwitchLatencyMs;
+    }
+
+    private static boolean isCurrent(@NonNull Cached local) {
+        if (local.watched && local.fileEvents != FILE_EVENTS.get()) {
+            return false;
+        }
+        ConfigSnapshot.Reader reader = snapshot;
+        // 解析失败后快照 generation 可能一直不变，不能据此认为仍是最新，按轮询间隔重试 config.json
+        if (reader != null && local.snapshotGeneration != NO_GENERATION && !local.parseFailed) {
+            if (reader.generation() != local.snapshotGeneration) {
+                return false;
+            }
+            // 直接改 config.json 不会动快照：只有监听已确认收到过事件（说明该文件系统上 inotify 可用）时才完全依赖它，
+            // 否则仍按粗粒度间隔 stat 一次 config.json
+            if (local.watched && local.fileEvents > 0) {
+                return true;
+            }
+            return (SystemClock.uptimeMillis() - local.lastCheckedAtMs) < WATCHED_RELOAD_INTERVAL_MS;
+        }
+        long interval = local.watched ? WATCHED_RELOAD_INTERVAL_MS : MIN_RELOAD_INTERVAL_MS;
+        return (SystemClock.uptimeMillis() - local.lastCheckedAtMs) < interval;
+    }
+
+    private static synchronized Config reload(@Nullable Cached previous) {
+        Cached local = cached;
+        if (local != null && local != previous && isCurrent(local)) {
+            return local.effective;
+        }
+
+        ensureWatching();
+        boolean watched = watcher != null;
+        int fileEvents = FILE_EVENTS.get();
+        long now = SystemClock.uptimeMillis();
 
         File configFile = new File(DEFAULT_CONFIG_PATH);
         boolean exists = configFile.exists() && configFile.isFile();
         long lastModified = exists ? configFile.lastModified() : 0L;
         long length = exists ? configFile.length() : -1L;
 
+        ConfigSnapshot.Reader reader = snapshot;
+        if (reader == null) {
+            reader = ConfigSnapshot.open(new File(DEFAULT_SNAPSHOT_PATH));
+            if (reader != null) {
+                snapshot = reader;
+            }
+        }
+        if (reader != null) {
+            long generation = reader.generation();
+            // 快照只在与刚才 stat 到的 config.json 一致时才可信，否则落到下面解析 config.json
+            if ((local == null || local.snapshotGeneration != generation)
+                    && reader.matchesSource(generation, lastModified, length)) {
+                long version = reader.version(generation);
+                if (local != null && version > 0L && version <= local.config.version) {
+                    Cached next = new Cached(local.config, generation, now, watched, fileEvents,
+                            exists, lastModified, length);
+                    cached = next;
+                    return next.effective;
+                }
+                Config fromSnapshot = reader.read(generation);
+                if (fromSnapshot != null) {
+                    Cached next = new Cached(fromSnapshot, generation, now, watched, fileEvents,
+                            exists, lastModified, length);
+                    publish(local, next, "config.bin");
+                    return next.effective;
+                }
+                if (local != null) {
+                    return local.effective;
+                }
+            }
+        }
+
+        long snapshotGeneration = local != null ? local.snapshotGeneration : NO_GENERATION;
         if (local != null && local.configExists == exists
                 && local.configLastModified == lastModified
                 && local.configLength == length) {
-            cached = new Cached(local.config, now, exists, lastModified, length);
-            return local.config;
+            if (local.watched == watched && local.fileEvents == fileEvents) {
+                local.lastCheckedAtMs = now;
+                return local.effective;
+            }
+            Cached next = new Cached(local.config, snapshotGeneration, now, watched, fileEvents,
+                    exists, lastModified, length);
+            cached = next;
+            return next.effective;
         }
 
         Config disk = exists ? loadFromDisk(configFile) : null;
+        if (disk == null && exists) {
+            Logger.log("config.json 无法解析，沿用当前配置并稍后重试");
+            Config current = local != null ? local.config : Config.defaultDisabled();
+            Cached next = new Cached(current, snapshotGeneration, now, false, fileEvents,
+                    false, 0L, -1L, true);
+            cached = next;
+            return next.effective;
+        }
+        if (disk != null && local != null && disk.version > 0L && disk.version < local.config.version) {
+            Logger.log("忽略过期的 config.json: version=" + disk.version + " < " + local.config.version);
+            Cached next = new Cached(local.config, snapshotGeneration, now, watched, fileEvents,
+                    exists, lastModified, length);
+            cached = next;
+            return next.effective;
+        }
         if (disk == null) {
             disk = Config.defaultDisabled();
         }
-        cached = new Cached(disk, now, exists, lastModified, length);
-        return disk;
+        Cached next = new Cached(disk, snapshotGeneration, now, watched, fileEvents,
+                exists, lastModified, length);
+        publish(local, next, "config.json");
+        return next.effective;
+    }
+
+    private static void publish(@Nullable Cached previous, @NonNull Cached next, @NonNull String source) {
+        cached = next;
+        if (previous == null || !next.configExists) {
+            return;
+        }
+        long latency = Math.max(0L, System.currentTimeMillis() - next.configLastModified);
+        lastSwitchLatencyMs = latency;
+        Logger.log("配置已刷新(" + source + (next.watched ? ", inotify" : ", 轮询") + "): 保存后 " + latency + "ms 生效");
+    }
+
+    private static void ensureWatching() {
+        if (watchAttempted) {
+            return;
+        }
+        watchAttempted = true;
+        File dir = new File(DEFAULT_DIR);
+        if (!dir.isDirectory()) {
+            return;
+        }
+        try {
+            ConfigWatcher w = new ConfigWatcher(DEFAULT_DIR);
+            w.startWatching();
+            watcher = w;
+        } catch (Throwable t) {
+            Logger.log("监听配置目录失败，回退为轮询:", t);
+        }
     }
 
     @NonNull
@@ -88,14 +251,19 @@ public final class ConfigLoader {
         }
     }
 
-    public static void saveToDisk(Config config) throws IOException {
+    public static synchronized void saveToDisk(Config config) throws IOException {
         File dir = new File(DEFAULT_DIR);
         if (!dir.exists() && !dir.mkdirs()) {
             throw new IOException("无法创建目录: " + DEFAULT_DIR);
         }
 
+        Config current = loadFromDisk();
+        long version = Math.max(config.version, current != null ? current.version : 0L) + 1L;
+        config = Config.builder(config).setVersion(version).build();
+
         JSONObject obj = new JSONObject();
         try {
+            obj.put("version", config.version);
             obj.put("enabled", config.enabled);
             obj.put("enablePhoto", config.enablePhoto);
             obj.put("enableVideo", config.enableVideo);
@@ -110,37 +278,66 @@ public final class ConfigLoader {
             obj.put("videoPath", config.videoPath);
             obj.put("latitude", config.latitude);
             obj.put("longitude", config.longitude);
+            obj.put("cacheBudgetBytes", config.cacheBudgetBytes);
+            obj.put("videoHardLink", config.videoHardLink);
+            obj.put("enablePreview", config.enablePreview);
+            obj.put("framesPath", config.framesPath);
+            obj.put("framesFormat", config.framesFormat);
+            obj.put("framesWidth", config.framesWidth);
+            obj.put("framesHeight", config.framesHeight);
+            obj.put("patchExif", config.patchExif);
+            obj.put("playlistOrder", config.playlistOrder);
+            obj.put("playlistSeed", config.playlistSeed);
+            obj.put("prefetchCount", config.prefetchCount);
+            obj.put("skipCapture", config.skipCapture);
+            obj.put("muxerDropSamples", config.muxerDropSamples);
+            obj.put("lazyHooks", config.lazyHooks);
+            obj.put("trackPath", config.trackPath);
+            obj.put("trackLoop", config.trackLoop);
+            obj.put("trackStartMs", config.trackStartMs);
+            obj.put("locationGlobalGetters", config.locationGlobalGetters);
+            obj.put("videoAsyncCommit", config.videoAsyncCommit);
+            if (!config.profiles.isEmpty()) {
+                JSONObject profiles = new JSONObject();
+                for (Map.Entry<String, Config.Profile> e : config.profiles.entrySet()) {
+                    profiles.put(e.getKey(), profileToJson(e.getValue()));
+                }
+                obj.put("profiles", profiles);
+            }
         } catch (JSONException e) {
             throw new IOException("序列化配置失败: " + e.getMessage(), e);
         }
 
         File f = new File(DEFAULT_CONFIG_PATH);
-        FileOutputStream fos = null;
+        FileOps.writeAtomically(f, obj.toString().getBytes(StandardCharsets.UTF_8));
+
+        boolean exists = f.exists() && f.isFile();
+        long lastModified = exists ? f.lastModified() : 0L;
+        long length = exists ? f.length() : -1L;
+        long generation = NO_GENERATION;
         try {
-            fos = new FileOutputStream(f, false);
-            fos.write(obj.toString().getBytes(StandardCharsets.UTF_8));
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException ignored) {
-                }
-            }
+            generation = ConfigSnapshot.write(new File(DEFAULT_SNAPSHOT_PATH), config, lastModified, length);
+        } catch (IOException e) {
+            Logger.log("写入配置快照失败:", e);
         }
+        TrackImporter.prepare(config.trackPath);
 
-        boolean exists = f.exists() && f.isFile();
         cached = new Cached(
                 config,
+                generation,
                 SystemClock.uptimeMillis(),
+                false,
+                FILE_EVENTS.get(),
                 exists,
-                exists ? f.lastModified() : 0L,
-                exists ? f.length() : -1L
+                lastModified,
+                length
         );
     }
 
     private static Config fromJson(String json) throws IOException {
         try {
             JSONObject obj = new JSONObject(json);
+            long version = Math.max(0L, obj.optLong("version", 0L));
             boolean enabled = obj.optBoolean("enabled", false);
             boolean enablePhoto = obj.optBoolean("enablePhoto", true);
             boolean enableVideo = obj.optBoolean("enableVideo", true);
@@ -150,6 +347,10 @@ public final class ConfigLoader {
             String videoPath = obj.optString("videoPath", DEFAULT_VIDEO_PATH);
             double latitude = sanitizeLatitude(obj.optDouble("latitude", DEFAULT_LATITUDE));
             double longitude = sanitizeLongitude(obj.optDouble("longitude", DEFAULT_LONGITUDE));
+            long cacheBudgetBytes = obj.optLong("cacheBudgetBytes", DEFAULT_CACHE_BUDGET_BYTES);
+            if (cacheBudgetBytes < 0L) {
+                cacheBudgetBytes = DEFAULT_CACHE_BUDGET_BYTES;
+            }
 
             List<String> allowlist = new ArrayList<>();
             JSONArray arr = obj.optJSONArray("allowlist");
@@ -162,27 +363,104 @@ public final class ConfigLoader {
                 }
             }
 
+            Map<String, Config.Profile> profiles = new LinkedHashMap<>();
+            JSONObject profilesObj = obj.optJSONObject("profiles");
+            if (profilesObj != null) {
+                Iterator<String> keys = profilesObj.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    String pkg = key.trim();
+                    JSONObject profileObj = profilesObj.optJSONObject(key);
+                    if (!pkg.isEmpty() && profileObj != null) {
+                        profiles.put(pkg, profileFromJson(profileObj));
+                    }
+                }
+            }
+
             if (!Config.MODE_ALL.equals(mode) && !Config.MODE_ALLOWLIST.equals(mode)) {
                 mode = Config.MODE_ALLOWLIST;
             }
 
-            return new Config(
-                    enabled,
-                    enablePhoto,
-                    enableVideo,
-                    enableLocation,
-                    mode,
-                    allowlist,
-                    photoPath,
-                    videoPath,
-                    latitude,
-                    longitude
-            );
+            return Config.builder()
+                    .setEnabled(enabled)
+                    .setEnablePhoto(enablePhoto)
+                    .setEnableVideo(enableVideo)
+                    .setEnableLocation(enableLocation)
+                    .setMode(mode)
+                    .setAllowlist(allowlist)
+                    .setPhotoPath(photoPath)
+                    .setVideoPath(videoPath)
+                    .setLatitude(latitude)
+                    .setLongitude(longitude)
+                    .setProfiles(profiles)
+                    .setVersion(version)
+                    .setCacheBudgetBytes(cacheBudgetBytes)
+                    .setVideoHardLink(obj.optBoolean("videoHardLink", false))
+                    .setEnablePreview(obj.optBoolean("enablePreview", false))
+                    .setFramesPath(obj.optString("framesPath", "").trim())
+                    .setFramesFormat(obj.optString("framesFormat", FrameSource.FORMAT_Y4M).trim().toLowerCase(Locale.ROOT))
+                    .setFramesWidth(obj.optInt("framesWidth", 0))
+                    .setFramesHeight(obj.optInt("framesHeight", 0))
+                    .setPatchExif(obj.optBoolean("patchExif", true))
+                    .setPlaylistOrder(obj.optString("playlistOrder", Config.PLAYLIST_ROUND_ROBIN).trim().toLowerCase(Locale.ROOT))
+                    .setPlaylistSeed(obj.optLong("playlistSeed", 0L))
+                    .setPrefetchCount(obj.optInt("prefetchCount", 4))
+                    .setSkipCapture(obj.optBoolean("skipCapture", false))
+                    .setMuxerDropSamples(obj.optBoolean("muxerDropSamples", false))
+                    .setLazyHooks(obj.optBoolean("lazyHooks", false))
+                    .setTrackPath(obj.optString("trackPath", "").trim())
+                    .setTrackLoop(obj.optBoolean("trackLoop", true))
+                    .setTrackStartMs(obj.optLong("trackStartMs", 0L))
+                    .setLocationGlobalGetters(obj.optBoolean("locationGlobalGetters", false))
+                    .setVideoAsyncCommit(obj.optBoolean("videoAsyncCommit", false))
+                    .build();
         } catch (JSONException e) {
             throw new IOException("解析配置失败: " + e.getMessage(), e);
         }
     }
 
+    @NonNull
+    private static Config.Profile profileFromJson(@NonNull JSONObject obj) {
+        Double latitude = obj.has("latitude") ? obj.optDouble("latitude", Double.NaN) : null;
+        Double longitude = obj.has("longitude") ? obj.optDouble("longitude", Double.NaN) : null;
+        return new Config.Profile(
+                obj.has("enablePhoto") ? obj.optBoolean("enablePhoto") : null,
+                obj.has("enableVideo") ? obj.optBoolean("enableVideo") : null,
+                obj.has("enableLocation") ? obj.optBoolean("enableLocation") : null,
+                obj.has("photoPath") ? obj.optString("photoPath") : null,
+                obj.has("videoPath") ? obj.optString("videoPath") : null,
+                latitude != null && sanitizeLatitude(latitude) == latitude ? latitude : null,
+                longitude != null && sanitizeLongitude(longitude) == longitude ? longitude : null
+        );
+    }
+
+    @NonNull
+    private static JSONObject profileToJson(@NonNull Config.Profile profile) throws JSONException {
+        JSONObject obj = new JSONObject();
+        if (profile.enablePhoto != null) {
+            obj.put("enablePhoto", profile.enablePhoto.booleanValue());
+        }
+        if (profile.enableVideo != null) {
+            obj.put("enableVideo", profile.enableVideo.booleanValue());
+        }
+        if (profile.enableLocation != null) {
+            obj.put("enableLocation", profile.enableLocation.booleanValue());
+        }
+        if (profile.photoPath != null) {
+            obj.put("photoPath", profile.photoPath);
+        }
+        if (profile.videoPath != null) {
+            obj.put("videoPath", profile.videoPath);
+        }
+        if (profile.latitude != null) {
+            obj.put("latitude", profile.latitude.doubleValue());
+        }
+        if (profile.longitude != null) {
+            obj.put("longitude", profile.longitude.doubleValue());
+        }
+        return obj;
+    }
+
     private static double sanitizeLatitude(double latitude) {
         if (Double.isNaN(latitude) || latitude < -90.0d || latitude > 90.0d) {
             return DEFAULT_LATITUDE;
@@ -197,25 +475,69 @@ public final class ConfigLoader {
         return longitude;
     }
 
+    private static final class ConfigWatcher extends FileObserver {
+
+        @SuppressWarnings("deprecation")
+        ConfigWatcher(@NonNull String dir) {
+            super(dir, FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO
+                    | FileObserver.MOVED_FROM | FileObserver.CREATE | FileObserver.DELETE);
+        }
+
+        @Override
+        public void onEvent(int event, @Nullable String path) {
+            if (CONFIG_FILE_NAME.equals(path) || SNAPSHOT_FILE_NAME.equals(path)) {
+                FILE_EVENTS.incrementAndGet();
+            }
+        }
+    }
+
     private static final class Cached {
         final Config config;
-        final long lastCheckedAtMs;
+        final Config effective;
+        final long snapshotGeneration;
+        volatile long lastCheckedAtMs;
+        final boolean watched;
+        final int fileEvents;
         final boolean configExists;
         final long configLastModified;
         final long configLength;
+        final boolean parseFailed;
 
         Cached(
                 Config config,
+                long snapshotGeneration,
                 long lastCheckedAtMs,
+                boolean watched,
+                int fileEvents,
                 boolean configExists,
                 long configLastModified,
                 long configLength
+        ) {
+            this(config, snapshotGeneration, lastCheckedAtMs, watched, fileEvents,
+                    configExists, configLastModified, configLength, false);
+        }
+
+        Cached(
+                Config config,
+                long snapshotGeneration,
+                long lastCheckedAtMs,
+                boolean watched,
+                int fileEvents,
+                boolean configExists,
+                long configLastModified,
+                long configLength,
+                boolean parseFailed
         ) {
             this.config = config;
+            this.effective = config.resolve(packageName);
+            this.snapshotGeneration = snapshotGeneration;
             this.lastCheckedAtMs = lastCheckedAtMs;
+            this.watched = watched;
+            this.fileEvents = fileEvents;
             this.configExists = configExists;
             this.configLastModified = configLastModified;
             this.configLength = configLength;
+            this.parseFailed = parseFailed;
         }
     }
 }
@@ -0,0 +1,431 @@
+package com.zcf.virtualcam.xposed;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * config.json 的二进制快照（config.bin），由模块 App 写入，Hook 进程以只读方式 mmap。
+ * <p>
+ * 布局：magic | format | generation | payloadLength | crc32 | 配置 version | 门控标志 | 门控数量 |
+ * config.json mtime | config.json 长度 | payload | 门控表。
+ * 后两项记录写快照时 config.json 的 stat：adb 推送、备份恢复或快照写入失败都会让两者不一致，
+ * 此时读取方应改为解析 config.json，而不是用旧快照盖住较新的 config.json。
+ * 写入方原地更新：先把 generation 置为奇数，写完 payload 后再置为下一个偶数；
+ * 读取方只需比较 generation 即可判断缓存是否有效，变化时再按 crc 校验解码。
+ * 门控表是启用包名 hashCode 的有序数组，进程启动时只需二分查找即可排除非目标进程，不必解码配置。
+ */
+final class ConfigSnapshot {
+
+    static final int CAPACITY = 256 * 1024;
+
+    private static final int MAGIC = 0x5643534E;
+    private static final int FORMAT_VERSION = 16;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_FORMAT = 4;
+    private static final int OFF_GENERATION = 8;
+    private static final int OFF_LENGTH = 16;
+    private static final int OFF_CRC = 20;
+    private static final int OFF_VERSION = 24;
+    private static final int OFF_GATE_FLAGS = 32;
+    private static final int OFF_GATE_COUNT = 36;
+    private static final int OFF_SOURCE_MODIFIED = 40;
+    private static final int OFF_SOURCE_LENGTH = 48;
+    private static final int HEADER_SIZE = 56;
+
+    private static final int GATE_ENABLED = 1;
+    private static final int GATE_ALL = 1 << 1;
+
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private ConfigSnapshot() {
+    }
+
+    @Nullable
+    static Reader open(@NonNull File file) {
+        if (!file.isFile() || file.length() < CAPACITY) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, CAPACITY);
+            if (buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_FORMAT) != FORMAT_VERSION) {
+                return null;
+            }
+            return new Reader(buffer);
+        } catch (IOException e) {
+            Logger.log("映射配置快照失败:", e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * sourceModified/sourceLength 为刚写好的 config.json 的 stat，没有 config.json 时传 0/-1。
+     */
+    static long write(@NonNull File file, @NonNull Config config, long sourceModified, long sourceLength)
+            throws IOException {
+        byte[] payload = encode(config);
+        int[] gate = gateOf(config);
+        if (payload.length + 4L * gate.length > CAPACITY - HEADER_SIZE) {
+            throw new IOException("配置快照过大: " + payload.length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (raf.length() < CAPACITY) {
+                raf.setLength(CAPACITY);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY);
+            long generation = buffer.getInt(OFF_MAGIC) == MAGIC ? buffer.getLong(OFF_GENERATION) : 0L;
+            if ((generation & 1L) != 0L) {
+                generation++;
+            }
+            buffer.putLong(OFF_GENERATION, generation + 1L);
+            buffer.putInt(OFF_MAGIC, MAGIC);
+            buffer.putInt(OFF_FORMAT, FORMAT_VERSION);
+            buffer.position(HEADER_SIZE);
+            buffer.put(payload);
+            for (int hash : gate) {
+                buffer.putInt(hash);
+            }
+            buffer.putInt(OFF_LENGTH, payload.length);
+            buffer.putInt(OFF_CRC, (int) crc.getValue());
+            buffer.putLong(OFF_VERSION, config.version);
+            buffer.putInt(OFF_GATE_FLAGS, (config.enabled ? GATE_ENABLED : 0)
+                    | (Config.MODE_ALL.equals(config.mode) ? GATE_ALL : 0));
+            buffer.putInt(OFF_GATE_COUNT, gate.length);
+            buffer.putLong(OFF_SOURCE_MODIFIED, sourceModified);
+            buffer.putLong(OFF_SOURCE_LENGTH, sourceLength);
+            buffer.putLong(OFF_GENERATION, generation + 2L);
+            buffer.force();
+            return generation + 2L;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private static int[] gateOf(@NonNull Config config) {
+        int[] hashes = new int[config.getEnabledPackages().size()];
+        int i = 0;
+        for (String pkg : config.getEnabledPackages()) {
+            hashes[i++] = pkg.hashCode();
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    @NonNull
+    private static byte[] encode(@NonNull Config config) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeBoolean(config.enabled);
+        out.writeBoolean(config.enablePhoto);
+        out.writeBoolean(config.enableVideo);
+        out.writeBoolean(config.enableLocation);
+        out.writeUTF(config.mode);
+        out.writeInt(config.allowlist.size());
+        for (String pkg : config.allowlist) {
+            out.writeUTF(pkg);
+        }
+        out.writeUTF(config.photoPath);
+        out.writeUTF(config.videoPath);
+        out.writeDouble(config.latitude);
+        out.writeDouble(config.longitude);
+        out.writeLong(config.version);
+        out.writeLong(config.cacheBudgetBytes);
+        out.writeBoolean(config.videoHardLink);
+        out.writeBoolean(config.enablePreview);
+        out.writeUTF(config.framesPath);
+        out.writeUTF(config.framesFormat);
+        out.writeInt(config.framesWidth);
+        out.writeInt(config.framesHeight);
+        out.writeBoolean(config.patchExif);
+        out.writeUTF(config.playlistOrder);
+        out.writeLong(config.playlistSeed);
+        out.writeInt(config.prefetchCount);
+        out.writeBoolean(config.skipCapture);
+        out.writeBoolean(config.muxerDropSamples);
+        out.writeBoolean(config.lazyHooks);
+        out.writeUTF(config.trackPath);
+        out.writeBoolean(config.trackLoop);
+        out.writeLong(config.trackStartMs);
+        out.writeBoolean(config.locationGlobalGetters);
+        out.writeBoolean(config.videoAsyncCommit);
+        out.writeInt(config.profiles.size());
+        for (Map.Entry<String, Config.Profile> e : config.profiles.entrySet()) {
+            Config.Profile profile = e.getValue();
+            out.writeUTF(e.getKey());
+            writeBoolean(out, profile.enablePhoto);
+            writeBoolean(out, profile.enableVideo);
+            writeBoolean(out, profile.enableLocation);
+            writeString(out, profile.photoPath);
+            writeString(out, profile.videoPath);
+            writeDouble(out, profile.latitude);
+            writeDouble(out, profile.longitude);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    @NonNull
+    private static Config decode(@NonNull byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        boolean enabled = in.readBoolean();
+        boolean enablePhoto = in.readBoolean();
+        boolean enableVideo = in.readBoolean();
+        boolean enableLocation = in.readBoolean();
+        String mode = in.readUTF();
+        int count = in.readInt();
+        if (count < 0 || count > payload.length) {
+            throw new IOException("配置快照损坏: allowlist=" + count);
+        }
+        List<String> allowlist = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            allowlist.add(in.readUTF());
+        }
+        String photoPath = in.readUTF();
+        String videoPath = in.readUTF();
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        long version = in.readLong();
+        long cacheBudgetBytes = in.readLong();
+        boolean videoHardLink = in.readBoolean();
+        boolean enablePreview = in.readBoolean();
+        String framesPath = in.readUTF();
+        String framesFormat = in.readUTF();
+        int framesWidth = in.readInt();
+        int framesHeight = in.readInt();
+        boolean patchExif = in.readBoolean();
+        String playlistOrder = in.readUTF();
+        long playlistSeed = in.readLong();
+        int prefetchCount = in.readInt();
+        boolean skipCapture = in.readBoolean();
+        boolean muxerDropSamples = in.readBoolean();
+        boolean lazyHooks = in.readBoolean();
+        String trackPath = in.readUTF();
+        boolean trackLoop = in.readBoolean();
+        long trackStartMs = in.readLong();
+        boolean locationGlobalGetters = in.readBoolean();
+        boolean videoAsyncCommit = in.readBoolean();
+        int profileCount = in.readInt();
+        if (profileCount < 0 || profileCount > payload.length) {
+            throw new IOException("配置快照损坏: profiles=" + profileCount);
+        }
+        Map<String, Config.Profile> profiles = new LinkedHashMap<>();
+        for (int i = 0; i < profileCount; i++) {
+            String pkg = in.readUTF();
+            profiles.put(pkg, new Config.Profile(
+                    readBoolean(in),
+                    readBoolean(in),
+                    readBoolean(in),
+                    readString(in),
+                    readString(in),
+                    readDouble(in),
+                    readDouble(in)
+            ));
+        }
+        return Config.builder()
+                .setEnabled(enabled)
+                .setEnablePhoto(enablePhoto)
+                .setEnableVideo(enableVideo)
+                .setEnableLocation(enableLocation)
+                .setMode(mode)
+                .setAllowlist(allowlist)
+                .setPhotoPath(photoPath)
+                .setVideoPath(videoPath)
+                .setLatitude(latitude)
+                .setLongitude(longitude)
+                .setProfiles(profiles)
+                .setVersion(version)
+                .setCacheBudgetBytes(cacheBudgetBytes)
+                .setVideoHardLink(videoHardLink)
+                .setEnablePreview(enablePreview)
+                .setFramesPath(framesPath)
+                .setFramesFormat(framesFormat)
+                .setFramesWidth(framesWidth)
+                .setFramesHeight(framesHeight)
+                .setPatchExif(patchExif)
+                .setPlaylistOrder(playlistOrder)
+                .setPlaylistSeed(playlistSeed)
+                .setPrefetchCount(prefetchCount)
+                .setSkipCapture(skipCapture)
+                .setMuxerDropSamples(muxerDropSamples)
+                .setLazyHooks(lazyHooks)
+                .setTrackPath(trackPath)
+                .setTrackLoop(trackLoop)
+                .setTrackStartMs(trackStartMs)
+                .setLocationGlobalGetters(locationGlobalGetters)
+                .setVideoAsyncCommit(videoAsyncCommit)
+                .build();
+    }
+
+    private static void writeBoolean(@NonNull DataOutputStream out, @Nullable Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : (value ? 1 : 0));
+    }
+
+    private static void writeString(@NonNull DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void writeDouble(@NonNull DataOutputStream out, @Nullable Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    @Nullable
+    private static Boolean readBoolean(@NonNull DataInputStream in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value != 0;
+    }
+
+    @Nullable
+    private static String readString(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @Nullable
+    private static Double readDouble(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    static final class Reader {
+        private final MappedByteBuffer buffer;
+
+        private Reader(@NonNull MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long generation() {
+            return buffer.getLong(OFF_GENERATION);
+        }
+
+        /**
+         * 仅凭快照头部与门控表判断该包是否可能被启用；快照正在写入时保守地返回 true。
+         * hashCode 碰撞只会放行，不会误拒，最终仍以完整配置为准。
+         */
+        boolean mayEnable(@NonNull String packageName) {
+            long generation = buffer.getLong(OFF_GENERATION);
+            if ((generation & 1L) != 0L) {
+                return true;
+            }
+            int flags = buffer.getInt(OFF_GATE_FLAGS);
+            int count = buffer.getInt(OFF_GATE_COUNT);
+            int base = HEADER_SIZE + buffer.getInt(OFF_LENGTH);
+            if (count < 0 || base < HEADER_SIZE || base + 4L * count > CAPACITY) {
+                return true;
+            }
+            boolean admitted;
+            if ((flags & GATE_ENABLED) == 0) {
+                admitted = false;
+            } else if ((flags & GATE_ALL) != 0) {
+                admitted = true;
+            } else {
+                admitted = contains(base, count, packageName.hashCode());
+            }
+            return admitted || buffer.getLong(OFF_GENERATION) != generation;
+        }
+
+        private boolean contains(int base, int count, int hash) {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int value = buffer.getInt(base + mid * 4);
+                if (value < hash) {
+                    lo = mid + 1;
+                } else if (value > hash) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 快照是否由当前这份 config.json 生成；不一致说明 config.json 在快照之外被改过。
+         */
+        boolean matchesSource(long generation, long sourceModified, long sourceLength) {
+            boolean matches = buffer.getLong(OFF_SOURCE_MODIFIED) == sourceModified
+                    && buffer.getLong(OFF_SOURCE_LENGTH) == sourceLength;
+            return matches && buffer.getLong(OFF_GENERATION) == generation;
+        }
+
+        long version(long generation) {
+            long version = buffer.getLong(OFF_VERSION);
+            return buffer.getLong(OFF_GENERATION) == generation ? version : -1L;
+        }
+
+        @Nullable
+        Config read(long generation) {
+            if ((generation & 1L) != 0L) {
+                return null;
+            }
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+                int length = buffer.getInt(OFF_LENGTH);
+                if (length <= 0 || length > CAPACITY - HEADER_SIZE) {
+                    return null;
+                }
+                byte[] payload = new byte[length];
+                ByteBuffer view = buffer.duplicate();
+                view.position(HEADER_SIZE);
+                view.get(payload, 0, length);
+                int expectedCrc = buffer.getInt(OFF_CRC);
+                if (buffer.getLong(OFF_GENERATION) != generation) {
+                    return null;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    continue;
+                }
+                try {
+                    return decode(payload);
+                } catch (IOException e) {
+                    Logger.log("解析配置快照失败:", e);
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.zcf.virtualcam.xposed;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Calendar;
+
+/**
+ * 不解码像素，直接在字节层面把 JPEG 的 EXIF（APP1）替换为新生成的段：Exif 版本、拍摄时间、方向与 GPS。
+ * 每个源 JPEG 的段布局只解析一次，之后每次拍照只生成几百字节的 APP1 并拼接原有数据。
+ */
+final class ExifPatcher {
+
+    static final int ORIENTATION_NORMAL = 1;
+
+    private static final int TYPE_BYTE = 1;
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+    private static final int TYPE_UNDEFINED = 7;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATETIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_GPS_IFD = 0x8825;
+    private static final int TAG_EXIF_VERSION = 0x9000;
+    private static final int TAG_DATETIME_ORIGINAL = 0x9003;
+    private static final int TAG_DATETIME_DIGITIZED = 0x9004;
+    private static final int TAG_GPS_VERSION = 0x0000;
+    private static final int TAG_GPS_LATITUDE_REF = 0x0001;
+    private static final int TAG_GPS_LATITUDE = 0x0002;
+    private static final int TAG_GPS_LONGITUDE_REF = 0x0003;
+    private static final int TAG_GPS_LONGITUDE = 0x0004;
+
+    private static final int EXIF_VERSION_0230 = ('0' << 24) | ('2' << 16) | ('3' << 8) | '0';
+    private static final int DATETIME_LENGTH = 20;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private static volatile Layout lastLayout;
+
+    private ExifPatcher() {
+    }
+
+    /**
+     * GPS 取自当前生效的合成定位（配置了轨迹时即轨迹上此刻的位置），与同一时刻定位 API 返回的一致；未启用定位时不写 GPS。
+     */
+    @NonNull
+    static byte[] patch(@NonNull byte[] jpeg, long timeMs, int orientation, @NonNull Config config) {
+        LocationState location = LocationHook.resolveState(config);
+        if (location == null) {
+            return patch(jpeg, timeMs, orientation, false, 0d, 0d);
+        }
+        LocationState.Fix fix = location.fix();
+        return patch(jpeg, timeMs, orientation, true, fix.latitude, fix.longitude);
+    }
+
+    @NonNull
+    static byte[] patch(@NonNull byte[] jpeg, long timeMs, int orientation, boolean withGps,
+                        double latitude, double longitude) {
+        Layout layout = layoutOf(jpeg);
+        if (layout == null) {
+            return jpeg;
+        }
+        byte[] app1 = buildApp1(timeMs, orientation, withGps, latitude, longitude);
+        int keptTail = jpeg.length - layout.dropEnd;
+        int between = layout.dropStart - layout.insertAt;
+        byte[] out = new byte[layout.insertAt + app1.length + between + keptTail];
+        int pos = 0;
+        System.arraycopy(jpeg, 0, out, pos, layout.insertAt);
+        pos += layout.insertAt;
+        System.arraycopy(app1, 0, out, pos, app1.length);
+        pos += app1.length;
+        System.arraycopy(jpeg, layout.insertAt, out, pos, between);
+        pos += between;
+        System.arraycopy(jpeg, layout.dropEnd, out, pos, keptTail);
+        return out;
+    }
+
+    private static Layout layoutOf(@NonNull byte[] jpeg) {
+        Layout layout = lastLayout;
+        if (layout != null && layout.source == jpeg) {
+            return layout;
+        }
+        layout = parse(jpeg);
+        if (layout != null) {
+            lastLayout = layout;
+        }
+        return layout;
+    }
+
+    private static Layout parse(@NonNull byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xff) != 0xFF || (jpeg[1] & 0xff) != 0xD8) {
+            return null;
+        }
+        int insertAt = 2;
+        int dropStart = -1;
+        int dropEnd = -1;
+        int pos = 2;
+        while (pos + 4 <= jpeg.length) {
+            if ((jpeg[pos] & 0xff) != 0xFF) {
+                return null;
+            }
+            int marker = jpeg[pos + 1] & 0xff;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9 || marker < 0xE0 || marker > 0xEF) {
+                break;
+            }
+            int length = ((jpeg[pos + 2] & 0xff) << 8) | (jpeg[pos + 3] & 0xff);
+            int end = pos + 2 + length;
+            if (length < 2 || end > jpeg.length) {
+                return null;
+            }
+            if (marker == 0xE0 && pos == insertAt) {
+                insertAt = end;
+            } else if (marker == 0xE1 && dropStart < 0 && isExif(jpeg, pos + 4, end)) {
+                dropStart = pos;
+                dropEnd = end;
+            }
+            pos = end;
+        }
+        if (dropStart < 0) {
+            dropStart = insertAt;
+            dropEnd = insertAt;
+        }
+        return new Layout(jpeg, insertAt, dropStart, dropEnd);
+    }
+
+    private static boolean isExif(@NonNull byte[] jpeg, int start, int end) {
+        if (end - start < EXIF_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (jpeg[start + i] != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private static byte[] buildApp1(long timeMs, int orientation, boolean withGps, double latitude, double longitude) {
+        int ifd0Count = withGps ? 4 : 3;
+        int ifd0Size = 2 + ifd0Count * 12 + 4;
+        int exifIfdSize = 2 + 3 * 12 + 4;
+        int gpsIfdSize = withGps ? 2 + 5 * 12 + 4 : 0;
+
+        int ifd0 = 8;
+        int dateTime = ifd0 + ifd0Size;
+        int exifIfd = dateTime + DATETIME_LENGTH;
+        int gpsIfd = exifIfd + exifIfdSize;
+        int latValue = gpsIfd + gpsIfdSize;
+        int lngValue = latValue + 24;
+        int tiffSize = withGps ? lngValue + 24 : gpsIfd;
+
+        int segmentLength = 2 + EXIF_HEADER.length + tiffSize;
+        ByteBuffer buf = ByteBuffer.allocate(2 + segmentLength).order(ByteOrder.BIG_ENDIAN);
+        buf.put((byte) 0xFF).put((byte) 0xE1).putShort((short) segmentLength);
+        buf.put(EXIF_HEADER);
+        int tiff = buf.position();
+
+        buf.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(ifd0);
+
+        buf.putShort((short) ifd0Count);
+        entry(buf, TAG_ORIENTATION, TYPE_SHORT, 1, orientation << 16);
+        entry(buf, TAG_DATETIME, TYPE_ASCII, DATETIME_LENGTH, dateTime);
+        entry(buf, TAG_EXIF_IFD, TYPE_LONG, 1, exifIfd);
+        if (withGps) {
+            entry(buf, TAG_GPS_IFD, TYPE_LONG, 1, gpsIfd);
+        }
+        buf.putInt(0);
+
+        byte[] date = formatDateTime(timeMs);
+        buf.put(date);
+
+        buf.putShort((short) 3);
+        entry(buf, TAG_EXIF_VERSION, TYPE_UNDEFINED, 4, EXIF_VERSION_0230);
+        entry(buf, TAG_DATETIME_ORIGINAL, TYPE_ASCII, DATETIME_LENGTH, dateTime);
+        entry(buf, TAG_DATETIME_DIGITIZED, TYPE_ASCII, DATETIME_LENGTH, dateTime);
+        buf.putInt(0);
+
+        if (withGps) {
+            buf.putShort((short) 5);
+            entry(buf, TAG_GPS_VERSION, TYPE_BYTE, 4, 0x02020000);
+            entry(buf, TAG_GPS_LATITUDE_REF, TYPE_ASCII, 2, (latitude < 0 ? 'S' : 'N') << 24);
+            entry(buf, TAG_GPS_LATITUDE, TYPE_RATIONAL, 3, latValue);
+            entry(buf, TAG_GPS_LONGITUDE_REF, TYPE_ASCII, 2, (longitude < 0 ? 'W' : 'E') << 24);
+            entry(buf, TAG_GPS_LONGITUDE, TYPE_RATIONAL, 3, lngValue);
+            buf.putInt(0);
+            putDegrees(buf, Math.abs(latitude));
+            putDegrees(buf, Math.abs(longitude));
+        }
+        if (buf.position() - tiff != tiffSize) {
+            throw new IllegalStateException("EXIF 布局错误");
+        }
+        return buf.array();
+    }
+
+    private static void entry(@NonNull ByteBuffer buf, int tag, int type, int count, int value) {
+        buf.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static void putDegrees(@NonNull ByteBuffer buf, double value) {
+        int degrees = (int) value;
+        double minutesFull = (value - degrees) * 60d;
+        int minutes = (int) minutesFull;
+        long seconds = Math.round((minutesFull - minutes) * 60d * 10000d);
+        buf.putInt(degrees).putInt(1);
+        buf.putInt(minutes).putInt(1);
+        buf.putInt((int) seconds).putInt(10000);
+    }
+
+    @NonNull
+    private static byte[] formatDateTime(long timeMs) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(timeMs);
+        byte[] out = new byte[DATETIME_LENGTH];
+        digits(out, 0, c.get(Calendar.YEAR), 4);
+        out[4] = ':';
+        digits(out, 5, c.get(Calendar.MONTH) + 1, 2);
+        out[7] = ':';
+        digits(out, 8, c.get(Calendar.DAY_OF_MONTH), 2);
+        out[10] = ' ';
+        digits(out, 11, c.get(Calendar.HOUR_OF_DAY), 2);
+        out[13] = ':';
+        digits(out, 14, c.get(Calendar.MINUTE), 2);
+        out[16] = ':';
+        digits(out, 17, c.get(Calendar.SECOND), 2);
+        out[19] = 0;
+        return out;
+    }
+
+    private static void digits(@NonNull byte[] out, int offset, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            out[offset + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static final class Layout {
+        @NonNull
+        final byte[] source;
+        final int insertAt;
+        final int dropStart;
+        final int dropEnd;
+
+        Layout(@NonNull byte[] source, int insertAt, int dropStart, int dropEnd) {
+            this.source = source;
+            this.insertAt = insertAt;
+            this.dropStart = dropStart;
+            this.dropEnd = dropEnd;
+        }
+    }
+}
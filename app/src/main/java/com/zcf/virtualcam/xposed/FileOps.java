@@ -2,65 +2,208 @@ package com.zcf.virtualcam.xposed;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class FileOps {
 
+    static final int MAX_PHOTO_BYTES = 10 * 1024 * 1024;
+
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+
     private FileOps() {
     }
 
-    private static final Map<String, CachedBytes> BYTES_CACHE = new ConcurrentHashMap<>();
+    private static final long STAT_TTL_MS = 200L;
+
+    private static final Object CACHE_LOCK = new Object();
+    private static final LinkedHashMap<String, CachedBytes> BYTES_CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytesTotal;
+
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+    private static final AtomicLong CACHE_MISSES = new AtomicLong();
+    private static final AtomicLong CACHE_EVICTIONS = new AtomicLong();
 
     @Nullable
     public static byte[] readCachedBytes(@NonNull String path, int maxBytes) {
-        try {
-            File f = new File(path);
-            if (!f.exists() || !f.isFile()) {
-                return null;
-            }
-            long lastModified = f.lastModified();
-            long length = f.length();
+        CachedBytes entry = readCachedEntry(path, maxBytes);
+        return entry != null ? entry.bytes : null;
+    }
 
-            CachedBytes cached = BYTES_CACHE.get(path);
-            if (cached != null && cached.lastModified == lastModified && cached.length == length) {
-                return cached.bytes;
-            }
+    @Nullable
+    static CachedBytes readCachedEntry(@NonNull String path, int maxBytes) {
+        long now = SystemClock.uptimeMillis();
+        CachedBytes cached;
+        synchronized (CACHE_LOCK) {
+            cached = BYTES_CACHE.get(path);
+        }
+        if (cached != null && now - cached.checkedAtMs < STAT_TTL_MS) {
+            CACHE_HITS.incrementAndGet();
+            return cached;
+        }
 
-            byte[] bytes = readAllBytes(f, maxBytes);
-            if (bytes == null) {
-                return null;
-            }
-            BYTES_CACHE.put(path, new CachedBytes(lastModified, length, bytes));
-            return bytes;
+        StructStat st;
+        try {
+            st = Os.stat(path);
+        } catch (ErrnoException e) {
+            invalidate(path);
+            return null;
+        }
+        if (!OsConstants.S_ISREG(st.st_mode)) {
+            invalidate(path);
+            return null;
+        }
+        long mtimeNanos = modifiedNanos(st);
+        AssetVersion version = new AssetVersion(path, st.st_size, mtimeNanos, st.st_ino);
+        if (cached != null && cached.version.equals(version)) {
+            cached.checkedAtMs = now;
+            CACHE_HITS.incrementAndGet();
+            return cached;
+        }
+
+        CACHE_MISSES.incrementAndGet();
+        byte[] bytes;
+        try {
+            bytes = readAllBytes(new File(path), maxBytes);
         } catch (IOException e) {
             Logger.log("读取文件失败: " + path + ",", e);
             return null;
         }
+        if (bytes == null) {
+            return null;
+        }
+        CachedBytes entry = new CachedBytes(version, bytes, now);
+        put(entry);
+        return entry;
+    }
+
+    public static long getCacheHits() {
+        return CACHE_HITS.get();
+    }
+
+    public static long getCacheMisses() {
+        return CACHE_MISSES.get();
+    }
+
+    public static long getCacheEvictions() {
+        return CACHE_EVICTIONS.get();
+    }
+
+    public static long getCachedBytes() {
+        synchronized (CACHE_LOCK) {
+            return cachedBytesTotal;
+        }
+    }
+
+    private static void put(@NonNull CachedBytes entry) {
+        long budget = ConfigLoader.get().cacheBudgetBytes;
+        int evicted = 0;
+        long total;
+        synchronized (CACHE_LOCK) {
+            CachedBytes previous = BYTES_CACHE.put(entry.version.path, entry);
+            if (previous != null) {
+                cachedBytesTotal -= previous.bytes.length;
+            }
+            cachedBytesTotal += entry.bytes.length;
+            Iterator<CachedBytes> it = BYTES_CACHE.values().iterator();
+            while (cachedBytesTotal > budget && it.hasNext()) {
+                CachedBytes eldest = it.next();
+                if (eldest == entry) {
+                    continue;
+                }
+                it.remove();
+                cachedBytesTotal -= eldest.bytes.length;
+                evicted++;
+            }
+            total = cachedBytesTotal;
+        }
+        if (evicted > 0) {
+            CACHE_EVICTIONS.addAndGet(evicted);
+            Logger.log("文件缓存淘汰: " + evicted + " 项, 占用=" + total + "/" + budget
+                    + ", hits=" + CACHE_HITS.get() + ", misses=" + CACHE_MISSES.get()
+                    + ", evictions=" + CACHE_EVICTIONS.get());
+        }
+    }
+
+    private static void invalidate(@NonNull String path) {
+        synchronized (CACHE_LOCK) {
+            CachedBytes removed = BYTES_CACHE.remove(path);
+            if (removed != null) {
+                cachedBytesTotal -= removed.bytes.length;
+            }
+        }
+    }
+
+    private static long modifiedNanos(@NonNull StructStat st) {
+        if (Build.VERSION.SDK_INT >= 27) {
+            return st.st_mtim.tv_sec * 1000000000L + st.st_mtim.tv_nsec;
+        }
+        return st.st_mtime * 1000000000L;
     }
 
     @Nullable
     public static byte[] readAllBytes(@NonNull File file, int maxBytes) throws IOException {
-        if (file.length() > maxBytes) {
-            throw new IOException("文件过大: " + file.getAbsolutePath());
+        FileInputStream fis = null;
+        try {
+            fis = new FileInputStream(file);
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            if (size > maxBytes) {
+                throw new IOException("文件过大: " + file.getAbsolutePath());
+            }
+            byte[] bytes = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int position = 0;
+            while (position < bytes.length) {
+                buffer.limit(Math.min(bytes.length, position + READ_CHUNK_BYTES));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("文件读取不完整: " + file.getAbsolutePath());
+                }
+                position += read;
+            }
+            return bytes;
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException ignored) {
+                }
+            }
         }
+    }
+
+    @NonNull
+    public static MappedByteBuffer mapReadOnly(@NonNull File file, long maxBytes) throws IOException {
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(file);
-            ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
-            copyStream(fis, bos);
-            return bos.toByteArray();
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            if (size > maxBytes) {
+                throw new IOException("文件过大: " + file.getAbsolutePath());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
         } finally {
             if (fis != null) {
                 try {
@@ -71,25 +214,124 @@ public final class FileOps {
         }
     }
 
-    public static void replaceFile(@NonNull File src, @NonNull File dst) throws IOException {
+    @NonNull
+    public static ReplaceResult replaceFile(@NonNull File src, @NonNull File dst, boolean allowHardLink) throws IOException {
+        long start = System.nanoTime();
+        File tmp = new File(dst.getAbsolutePath() + ".tmp");
+        ReplaceResult staged = stage(src, tmp, allowHardLink);
+        commit(tmp, dst);
+        return new ReplaceResult(staged.tier, staged.bytes, System.nanoTime() - start);
+    }
+
+    @NonNull
+    public static ReplaceResult stage(@NonNull File src, @NonNull File staged, boolean allowHardLink) throws IOException {
+        long start = System.nanoTime();
         if (!src.exists() || !src.isFile()) {
             throw new IOException("源文件不存在: " + src.getAbsolutePath());
         }
-        File parent = dst.getParentFile();
+        File parent = staged.getAbsoluteFile().getParentFile();
         if (parent != null && !parent.exists() && !parent.mkdirs()) {
             throw new IOException("无法创建目录: " + parent.getAbsolutePath());
         }
+        if (staged.exists() && !staged.delete()) {
+            throw new IOException("无法删除旧文件: " + staged.getAbsolutePath());
+        }
+        long bytes = src.length();
 
-        File tmp = new File(dst.getAbsolutePath() + ".tmp");
-        copyFile(src, tmp);
+        if (allowHardLink && parent != null && sameDevice(src, parent)) {
+            try {
+                Os.link(src.getAbsolutePath(), staged.getAbsolutePath());
+                return new ReplaceResult(ReplaceResult.TIER_LINK, bytes, System.nanoTime() - start);
+            } catch (ErrnoException ignored) {
+            }
+        }
+        try {
+            transferFile(src, staged);
+            return new ReplaceResult(ReplaceResult.TIER_TRANSFER, bytes, System.nanoTime() - start);
+        } catch (IOException e) {
+            Logger.log("transferTo 失败，改用普通复制:", e);
+        }
+        copyFile(src, staged);
+        return new ReplaceResult(ReplaceResult.TIER_COPY, bytes, System.nanoTime() - start);
+    }
+
+    public static void commit(@NonNull File staged, @NonNull File dst) throws IOException {
+        if (staged.renameTo(dst)) {
+            return;
+        }
         if (dst.exists() && !dst.delete()) {
             throw new IOException("无法删除旧文件: " + dst.getAbsolutePath());
         }
+        if (!staged.renameTo(dst)) {
+            copyFile(staged, dst);
+            if (!staged.delete()) {
+                Logger.log("临时文件删除失败: " + staged.getAbsolutePath());
+            }
+        }
+    }
+
+    private static boolean sameDevice(@NonNull File a, @NonNull File b) {
+        try {
+            return Os.stat(a.getAbsolutePath()).st_dev == Os.stat(b.getAbsolutePath()).st_dev;
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    private static void transferFile(@NonNull File src, @NonNull File dst) throws IOException {
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        try {
+            fis = new FileInputStream(src);
+            fos = new FileOutputStream(dst, false);
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long n = in.transferTo(position, size - position, out);
+                if (n <= 0) {
+                    throw new IOException("transferTo 未写入数据: " + src.getAbsolutePath());
+                }
+                position += n;
+            }
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public static void writeAtomically(@NonNull File dst, @NonNull byte[] data) throws IOException {
+        File tmp = new File(dst.getAbsolutePath() + ".tmp");
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp, false);
+            fos.write(data);
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
         if (!tmp.renameTo(dst)) {
-            copyFile(tmp, dst);
             if (!tmp.delete()) {
                 Logger.log("临时文件删除失败: " + tmp.getAbsolutePath());
             }
+            throw new IOException("无法替换文件: " + dst.getAbsolutePath());
         }
     }
 
@@ -117,6 +359,7 @@ public final class FileOps {
     }
 
     public static void copyFromUri(@NonNull Context context, @NonNull Uri uri, @NonNull File dst) throws IOException {
+        File tmp = new File(dst.getAbsolutePath() + ".tmp");
         InputStream is = null;
         OutputStream os = null;
         try {
@@ -124,7 +367,7 @@ public final class FileOps {
             if (is == null) {
                 throw new IOException("无法打开输入流: " + uri);
             }
-            os = new FileOutputStream(dst, false);
+            os = new FileOutputStream(tmp, false);
             copyStream(is, os);
         } finally {
             if (is != null) {
@@ -140,6 +383,7 @@ public final class FileOps {
                 }
             }
         }
+        commit(tmp, dst);
     }
 
     private static void copyStream(@NonNull InputStream is, @NonNull OutputStream os) throws IOException {
@@ -151,15 +395,76 @@ public final class FileOps {
         os.flush();
     }
 
-    private static final class CachedBytes {
-        final long lastModified;
+    public static final class ReplaceResult {
+        public static final String TIER_LINK = "link";
+        public static final String TIER_TRANSFER = "transferTo";
+        public static final String TIER_COPY = "copy";
+
+        @NonNull
+        public final String tier;
+        public final long bytes;
+        public final long durationNanos;
+
+        ReplaceResult(@NonNull String tier, long bytes, long durationNanos) {
+            this.tier = tier;
+            this.bytes = bytes;
+            this.durationNanos = durationNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return tier + ", " + bytes + " bytes, " + (durationNanos / 1000000L) + " ms";
+        }
+    }
+
+    static final class AssetVersion {
+        @NonNull
+        final String path;
         final long length;
-        final byte[] bytes;
+        final long mtimeNanos;
+        final long inode;
 
-        CachedBytes(long lastModified, long length, byte[] bytes) {
-            this.lastModified = lastModified;
+        AssetVersion(@NonNull String path, long length, long mtimeNanos, long inode) {
+            this.path = path;
             this.length = length;
+            this.mtimeNanos = mtimeNanos;
+            this.inode = inode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AssetVersion)) {
+                return false;
+            }
+            AssetVersion other = (AssetVersion) o;
+            return length == other.length && mtimeNanos == other.mtimeNanos
+                    && inode == other.inode && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = path.hashCode();
+            h = 31 * h + (int) (length ^ (length >>> 32));
+            h = 31 * h + (int) (mtimeNanos ^ (mtimeNanos >>> 32));
+            return 31 * h + (int) (inode ^ (inode >>> 32));
+        }
+    }
+
+    static final class CachedBytes {
+        @NonNull
+        final AssetVersion version;
+        @NonNull
+        final byte[] bytes;
+        volatile long checkedAtMs;
+
+        CachedBytes(@NonNull AssetVersion version, @NonNull byte[] bytes, long checkedAtMs) {
+            this.version = version;
             this.bytes = bytes;
+            this.checkedAtMs = checkedAtMs;
         }
     }
 }
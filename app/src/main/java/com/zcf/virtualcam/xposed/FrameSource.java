@@ -0,0 +1,262 @@
+package com.zcf.virtualcam.xposed;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 只读 mmap 的原始 YUV 帧序列（Y4M 或无头 I420/NV21），按帧号直接计算偏移取帧，不解码、不进堆。
+ */
+final class FrameSource {
+
+    static final String FORMAT_Y4M = "y4m";
+    static final String FORMAT_I420 = "i420";
+    static final String FORMAT_NV21 = "nv21";
+
+    private static final int MAX_HEADER_BYTES = 1024;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final long RETRY_INTERVAL_MS = 2000L;
+
+    private static final Object LOCK = new Object();
+    private static volatile FrameSource current;
+    private static String failedKey;
+    private static long failedAtMs;
+
+    @NonNull
+    final String path;
+    @NonNull
+    final String format;
+    final int width;
+    final int height;
+    final int frameCount;
+    final long fileLength;
+    final long lastModified;
+
+    private final int frameSize;
+    private final int ySize;
+    private final int chromaSize;
+    private final long frameStride;
+    private final int framesPerSegment;
+    @NonNull
+    private final ByteBuffer[] segments;
+    @NonNull
+    private final byte[] uScratch;
+    @NonNull
+    private final byte[] vScratch;
+
+    private FrameSource(@NonNull String path, @NonNull String format, int width, int height, long dataOffset,
+                        int frameHeaderBytes, long fileLength, long lastModified, @NonNull FileChannel channel)
+            throws IOException {
+        this.path = path;
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.ySize = width * height;
+        this.chromaSize = ((width + 1) / 2) * ((height + 1) / 2);
+        this.frameSize = ySize + 2 * chromaSize;
+        this.frameStride = (long) frameHeaderBytes + frameSize;
+        long frames = (fileLength - dataOffset) / frameStride;
+        if (frames <= 0) {
+            throw new IOException("帧序列为空: " + path);
+        }
+        this.frameCount = (int) Math.min(frames, Integer.MAX_VALUE);
+        this.framesPerSegment = (int) Math.max(1L, MAX_SEGMENT_BYTES / frameStride);
+
+        int segmentCount = (frameCount + framesPerSegment - 1) / framesPerSegment;
+        this.segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = dataOffset + (long) i * framesPerSegment * frameStride + frameHeaderBytes;
+            int framesInSegment = Math.min(framesPerSegment, frameCount - i * framesPerSegment);
+            long size = (framesInSegment - 1) * frameStride + frameSize;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segments[i] = mapped;
+        }
+        boolean planar = !FORMAT_NV21.equals(format);
+        this.uScratch = new byte[planar ? chromaSize : 0];
+        this.vScratch = new byte[planar ? chromaSize : 0];
+    }
+
+    @Nullable
+    static FrameSource current(@NonNull Config config) {
+        FrameSource source = current;
+        if (source != null && source.matches(config.framesPath, config.framesFormat, config.framesWidth, config.framesHeight)) {
+            return source;
+        }
+        return reopen(config, false);
+    }
+
+    @Nullable
+    static FrameSource refresh(@NonNull Config config) {
+        return reopen(config, true);
+    }
+
+    @Nullable
+    private static FrameSource reopen(@NonNull Config config, boolean checkFile) {
+        if (config.framesPath.isEmpty()) {
+            return null;
+        }
+        synchronized (LOCK) {
+            FrameSource source = current;
+            if (source != null && source.matches(config.framesPath, config.framesFormat, config.framesWidth, config.framesHeight)) {
+                File file = new File(source.path);
+                if (!checkFile || (file.length() == source.fileLength && file.lastModified() == source.lastModified)) {
+                    return source;
+                }
+            }
+            String key = config.framesPath + "|" + config.framesFormat + "|" + config.framesWidth + "x" + config.framesHeight;
+            long now = SystemClock.uptimeMillis();
+            if (!checkFile && key.equals(failedKey) && now - failedAtMs < RETRY_INTERVAL_MS) {
+                return null;
+            }
+            source = open(config.framesPath, config.framesFormat, config.framesWidth, config.framesHeight);
+            if (source == null) {
+                failedKey = key;
+                failedAtMs = now;
+                return null;
+            }
+            failedKey = null;
+            current = source;
+            Logger.log("已映射帧序列: " + source.path + " " + source.width + "x" + source.height
+                    + ", " + source.frameCount + " 帧");
+            return source;
+        }
+    }
+
+    @Nullable
+    static FrameSource open(@NonNull String path, @NonNull String format, int width, int height) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            long length = raf.length();
+            long lastModified = file.lastModified();
+            FileChannel channel = raf.getChannel();
+            if (FORMAT_Y4M.equals(format)) {
+                return openY4m(path, raf, channel, length, lastModified);
+            }
+            if (!FORMAT_I420.equals(format) && !FORMAT_NV21.equals(format)) {
+                throw new IOException("不支持的帧格式: " + format);
+            }
+            if (width <= 0 || height <= 0) {
+                throw new IOException("未配置帧尺寸: " + width + "x" + height);
+            }
+            return new FrameSource(path, format, width, height, 0L, 0, length, lastModified, channel);
+        } catch (IOException e) {
+            Logger.log("打开帧序列失败: " + path + ",", e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private static FrameSource openY4m(@NonNull String path, @NonNull RandomAccessFile raf, @NonNull FileChannel channel,
+                                       long length, long lastModified) throws IOException {
+        String header = readLine(raf, 0L);
+        if (!header.startsWith("YUV4MPEG2")) {
+            throw new IOException("不是 Y4M 文件: " + path);
+        }
+        int width = 0;
+        int height = 0;
+        for (String token : header.split(" ")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            char tag = token.charAt(0);
+            String value = token.substring(1);
+            if (tag == 'W') {
+                width = Integer.parseInt(value);
+            } else if (tag == 'H') {
+                height = Integer.parseInt(value);
+            } else if (tag == 'C' && !value.startsWith("420")) {
+                throw new IOException("仅支持 4:2:0 的 Y4M: C" + value);
+            } else if (tag == 'I' && !"p".equals(value)) {
+                throw new IOException("仅支持逐行扫描的 Y4M: I" + value);
+            }
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Y4M 头缺少尺寸: " + header);
+        }
+        long dataOffset = header.length() + 1L;
+        String frameHeader = readLine(raf, dataOffset);
+        if (!frameHeader.startsWith("FRAME")) {
+            throw new IOException("Y4M 帧头无效: " + frameHeader);
+        }
+        return new FrameSource(path, FORMAT_Y4M, width, height, dataOffset, frameHeader.length() + 1,
+                length, lastModified, channel);
+    }
+
+    @NonNull
+    private static String readLine(@NonNull RandomAccessFile raf, long offset) throws IOException {
+        byte[] buffer = new byte[MAX_HEADER_BYTES];
+        raf.seek(offset);
+        int n = raf.read(buffer);
+        for (int i = 0; i < n; i++) {
+            if (buffer[i] == '\n') {
+                return new String(buffer, 0, i, ASCII);
+            }
+        }
+        throw new IOException("Y4M 头过长或不完整");
+    }
+
+    int frameSizeNv21() {
+        return frameSize;
+    }
+
+    boolean matches(@NonNull String path, @NonNull String format, int width, int height) {
+        return this.path.equals(path) && this.format.equals(format)
+                && (FORMAT_Y4M.equals(format) || (this.width == width && this.height == height));
+    }
+
+    boolean copyNv21(int index, @NonNull byte[] out) {
+        if (out.length < frameSize) {
+            return false;
+        }
+        int frame = index % frameCount;
+        if (frame < 0) {
+            frame += frameCount;
+        }
+        ByteBuffer segment = segments[frame / framesPerSegment];
+        int offset = (int) ((frame % framesPerSegment) * frameStride);
+        synchronized (this) {
+            if (FORMAT_NV21.equals(format)) {
+                get(segment, offset, out, 0, frameSize);
+                return true;
+            }
+            get(segment, offset, out, 0, ySize);
+            get(segment, offset + ySize, uScratch, 0, chromaSize);
+            get(segment, offset + ySize + chromaSize, vScratch, 0, chromaSize);
+            int dst = ySize;
+            for (int i = 0; i < chromaSize; i++) {
+                out[dst++] = vScratch[i];
+                out[dst++] = uScratch[i];
+            }
+        }
+        return true;
+    }
+
+    private static void get(@NonNull ByteBuffer segment, int offset, @NonNull byte[] dst, int dstOffset, int length) {
+        segment.position(offset);
+        segment.get(dst, dstOffset, length);
+    }
+}
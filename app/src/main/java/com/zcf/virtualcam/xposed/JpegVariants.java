@@ -0,0 +1,229 @@
+package com.zcf.virtualcam.xposed;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按（素材版本, 宽, 高, 旋转, 质量）缓存与相机参数匹配的 JPEG，每个 key 只生成一次。
+ * 解码与编码只在后台线程上进行，锁内只登记/查找每个 key 的 {@link FutureTask}；
+ * 拍照回调最多等 {@link #MISS_WAIT_MS}，来不及就先交出原图，生成好的变体留给下一次。
+ * 前置摄像头的 JPEG 与后置一样是传感器方向的原始画面（镜像只发生在预览上），因此朝向不参与 key。
+ */
+final class JpegVariants {
+
+    private static final int MAX_VARIANTS = 8;
+    private static final int DEFAULT_QUALITY = 95;
+    private static final long MISS_WAIT_MS = 2000L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-jpeg");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Map<Key, Render> VARIANTS = new LinkedHashMap<Key, Render>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Render> eldest) {
+            return size() > MAX_VARIANTS;
+        }
+    };
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private JpegVariants() {
+    }
+
+    @NonNull
+    static byte[] get(@NonNull FileOps.CachedBytes asset, int width, int height, int rotation, int quality) {
+        if (width <= 0 || height <= 0) {
+            return asset.bytes;
+        }
+        Render task = schedule(asset, new Key(asset.version, width, height, normalizeRotation(rotation), quality));
+        try {
+            return task.get(MISS_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Logger.log("JPEG 变体尚未生成，本次返回原图: " + width + "x" + height + " rot=" + task.key.rotation);
+            return asset.bytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return asset.bytes;
+        } catch (ExecutionException | CancellationException e) {
+            return asset.bytes;
+        }
+    }
+
+    static void prefetch(@NonNull String path, int width, int height, int rotation, int quality) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            FileOps.CachedBytes asset = FileOps.readCachedEntry(path, FileOps.MAX_PHOTO_BYTES);
+            if (asset != null) {
+                schedule(asset, new Key(asset.version, width, height, normalizeRotation(rotation), quality));
+            }
+        });
+    }
+
+    /**
+     * 已有的任务直接返回（可能仍在生成）；没有时登记并排到后台线程上。
+     */
+    @NonNull
+    private static Render schedule(@NonNull FileOps.CachedBytes asset, @NonNull Key key) {
+        Render task;
+        synchronized (VARIANTS) {
+            task = VARIANTS.get(key);
+            if (task != null) {
+                HITS.incrementAndGet();
+                return task;
+            }
+            task = new Render(asset, key);
+            VARIANTS.put(key, task);
+        }
+        MISSES.incrementAndGet();
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    static long getHits() {
+        return HITS.get();
+    }
+
+    static long getMisses() {
+        return MISSES.get();
+    }
+
+    private static int normalizeRotation(int rotation) {
+        int r = rotation % 360;
+        return r < 0 ? r + 360 : r;
+    }
+
+    @Nullable
+    static byte[] render(@NonNull byte[] jpeg, int targetWidth, int targetHeight, int rotation, int targetQuality) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return jpeg;
+        }
+        int r = normalizeRotation(rotation);
+        boolean swap = r == 90 || r == 270;
+        int width = swap ? targetHeight : targetWidth;
+        int height = swap ? targetWidth : targetHeight;
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, bounds);
+        if (bounds.outWidth == width && bounds.outHeight == height) {
+            return jpeg;
+        }
+
+        Bitmap decoded = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+        if (decoded == null) {
+            return null;
+        }
+        int srcW = decoded.getWidth();
+        int srcH = decoded.getHeight();
+        int cropW = srcW;
+        int cropH = srcH;
+        if ((long) srcW * height > (long) srcH * width) {
+            cropW = (int) ((long) srcH * width / height);
+        } else {
+            cropH = (int) ((long) srcW * height / width);
+        }
+        Bitmap cropped = Bitmap.createBitmap(decoded, (srcW - cropW) / 2, (srcH - cropH) / 2, cropW, cropH);
+        Bitmap scaled = Bitmap.createScaledBitmap(cropped, width, height, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(jpeg.length, 64 * 1024));
+        int quality = targetQuality > 0 && targetQuality <= 100 ? targetQuality : DEFAULT_QUALITY;
+        boolean ok = scaled.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        if (scaled != cropped) {
+            scaled.recycle();
+        }
+        if (cropped != decoded) {
+            cropped.recycle();
+        }
+        decoded.recycle();
+        return ok ? out.toByteArray() : null;
+    }
+
+    private static final class Render extends FutureTask<byte[]> {
+        @NonNull
+        final Key key;
+
+        Render(@NonNull FileOps.CachedBytes asset, @NonNull Key key) {
+            super(() -> {
+                byte[] rendered = render(asset.bytes, key.width, key.height, key.rotation, key.quality);
+                return rendered != null ? rendered : asset.bytes;
+            });
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                byte[] variant = get();
+                Logger.log("生成 JPEG 变体: " + key.width + "x" + key.height + " rot=" + key.rotation
+                        + " (" + variant.length + " bytes), hits=" + HITS.get() + ", misses=" + MISSES.get());
+            } catch (ExecutionException e) {
+                Logger.log("生成 JPEG 变体失败:", e.getCause());
+                synchronized (VARIANTS) {
+                    if (VARIANTS.get(key) == this) {
+                        VARIANTS.remove(key);
+                    }
+                }
+            } catch (InterruptedException | CancellationException ignored) {
+            }
+        }
+    }
+
+    private static final class Key {
+        @NonNull
+        final FileOps.AssetVersion version;
+        final int width;
+        final int height;
+        final int rotation;
+        final int quality;
+
+        Key(@NonNull FileOps.AssetVersion version, int width, int height, int rotation, int quality) {
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.quality = quality;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && rotation == other.rotation
+                    && quality == other.quality && version.equals(other.version);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = version.hashCode();
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + rotation;
+            return 31 * h + quality;
+        }
+    }
+}
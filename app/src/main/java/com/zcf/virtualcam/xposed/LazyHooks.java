@@ -0,0 +1,60 @@
+package com.zcf.virtualcam.xposed;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * 延迟安装：启动时只在框架类的入口（构造函数或某个方法）上挂一个触发 Hook，
+ * 第一次被调用时才安装完整 Hook 并摘除触发 Hook；从不使用相机/录像的进程不付出安装成本。
+ */
+final class LazyHooks {
+
+    /**
+     * 触发调用本身发生在完整 Hook 安装之前，需要补做的记录（如 open 返回的 Camera）在这里完成；必须幂等。
+     */
+    interface Replay {
+        void afterFirstCall(@NonNull XC_MethodHook.MethodHookParam param);
+    }
+
+    private LazyHooks() {
+    }
+
+    static void onFirstCall(@NonNull String name, @NonNull Class<?> cls, @Nullable String method,
+                            @NonNull Runnable install, @Nullable Replay replay) {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        AtomicReference<Set<XC_MethodHook.Unhook>> trigger = new AtomicReference<>();
+        XC_MethodHook hook = new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (fired.compareAndSet(false, true)) {
+                    long start = System.nanoTime();
+                    try {
+                        install.run();
+                        Logger.log("延迟安装 " + name + " Hook: " + (System.nanoTime() - start) / 1000L + " µs");
+                    } catch (Throwable t) {
+                        Logger.log("延迟安装 " + name + " Hook 失败:", t);
+                    }
+                    Set<XC_MethodHook.Unhook> unhooks = trigger.get();
+                    if (unhooks != null) {
+                        for (XC_MethodHook.Unhook unhook : unhooks) {
+                            unhook.unhook();
+                        }
+                    }
+                }
+                if (replay != null) {
+                    replay.afterFirstCall(param);
+                }
+            }
+        };
+        trigger.set(method == null
+                ? XposedBridge.hookAllConstructors(cls, hook)
+                : XposedBridge.hookAllMethods(cls, method, hook));
+    }
+}
@@ -1,15 +1,33 @@
 package com.zcf.virtualcam.xposed;
 
+import android.content.Intent;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
+import android.location.LocationRequest;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.provider.Settings;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
@@ -17,11 +35,23 @@ import de.robv.android.xposed.XposedBridge;
 public final class LocationHook {
 
     private static final AtomicBoolean INSTALLED = new AtomicBoolean(false);
-    private static final String DEFAULT_PROVIDER = "gps";
-    private static final float DEFAULT_ACCURACY = 5.0f;
-    private static final double DEFAULT_ALTITUDE = 0.0d;
-    private static final float DEFAULT_SPEED = 0.0f;
-    private static final float DEFAULT_BEARING = 0.0f;
+    private static final long CLOCK_GRANULARITY_MS = 100L;
+
+    private static final ThreadLocal<int[]> REENTRANCY = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private static final Map<LocationListener, WeakReference<LocationListener>> WRAPPERS = new WeakHashMap<>();
+    private static final ReferenceQueue<LocationListener> COLLECTED_WRAPPERS = new ReferenceQueue<>();
+    // 引用对象自身不可达时不会入队，必须在这里强持有到被 drain 或注销为止
+    private static final Set<Reference<? extends LocationListener>> TRACKED_WRAPPERS = new HashSet<>();
+    private static final AtomicInteger LIVE_WRAPPERS = new AtomicInteger();
+
+    private static volatile LocationState state = new LocationState(Config.defaultDisabled());
+    private static volatile ClockValues clock = new ClockValues(0L, 0L);
 
     private LocationHook() {
     }
@@ -31,7 +61,11 @@ public final class LocationHook {
             return;
         }
         hookLocationManager();
-        hookLocation();
+        hookModernLocationManager();
+        hookPendingIntentUpdates();
+        if (ConfigLoader.get().locationGlobalGetters) {
+            hookLocation();
+        }
         hookSettings();
     }
 
@@ -39,61 +73,211 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(LocationManager.class, "getLastKnownLocation", new XC_MethodHook() {
             @Override
             protected void afterHookedMethod(MethodHookParam param) {
-                Config config = getActiveConfig();
-                if (config == null) {
+                LocationState active = getActiveState();
+                if (active == null) {
                     return;
                 }
                 Location origin = param.getResult() instanceof Location ? (Location) param.getResult() : null;
-                param.setResult(buildLocation(origin, config));
+                param.setResult(buildLocationInPlace(origin, active));
             }
         });
 
         XposedBridge.hookAllMethods(LocationManager.class, "requestLocationUpdates", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                Config config = getActiveConfig();
-                if (config == null) {
-                    return;
-                }
+                wrapAndSchedule(param.args, false);
+            }
+        });
+
+        XposedBridge.hookAllMethods(LocationManager.class, "requestSingleUpdate", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                wrapAndSchedule(param.args, true);
+            }
+        });
+
+        XposedBridge.hookAllMethods(LocationManager.class, "removeUpdates", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
                 int index = findListenerIndex(param.args);
                 if (index < 0) {
                     return;
                 }
                 LocationListener original = (LocationListener) param.args[index];
-                if (original == null) {
-                    return;
+                LocationScheduler scheduler = LocationScheduler.peek();
+                if (scheduler != null) {
+                    scheduler.remove(original);
+                }
+                LocationListener wrapper = releaseWrapper(original);
+                if (wrapper != null) {
+                    param.args[index] = wrapper;
+                    Logger.log("注销定位监听: " + original.getClass().getName() + ", live=" + getLiveWrappers());
                 }
-                param.args[index] = wrapListener(original);
             }
         });
+    }
 
-        XposedBridge.hookAllMethods(LocationManager.class, "requestSingleUpdate", new XC_MethodHook() {
+    /**
+     * API 30+：getCurrentLocation 直接在调用方的 Executor 上回调合成定位，不必等真实定位源（室内可能超时给 null）；
+     * requestFlush 换成已注册的包装，否则系统找不到对应的注册。
+     */
+    private static void hookModernLocationManager() {
+        XposedBridge.hookAllMethods(LocationManager.class, "getCurrentLocation", new XC_MethodHook() {
             @Override
+            @SuppressWarnings("unchecked")
             protected void beforeHookedMethod(MethodHookParam param) {
-                Config config = getActiveConfig();
-                if (config == null) {
+                LocationState active = getActiveState();
+                if (active == null || param.args == null || param.args.length == 0) {
+                    return;
+                }
+                CancellationSignal signal = null;
+                Executor executor = null;
+                for (Object arg : param.args) {
+                    if (arg instanceof CancellationSignal) {
+                        signal = (CancellationSignal) arg;
+                    } else if (arg instanceof Executor) {
+                        executor = (Executor) arg;
+                    }
+                }
+                Object last = param.args[param.args.length - 1];
+                if (executor == null || !(last instanceof Consumer) || (signal != null && signal.isCanceled())) {
                     return;
                 }
+                Consumer<Location> consumer = (Consumer<Location>) last;
+                CancellationSignal cancellation = signal;
+                Location location = buildLocationInPlace(null, active);
+                executor.execute(() -> {
+                    if (cancellation == null || !cancellation.isCanceled()) {
+                        consumer.accept(location);
+                    }
+                });
+                param.setResult(null);
+            }
+        });
+
+        XposedBridge.hookAllMethods(LocationManager.class, "requestFlush", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
                 int index = findListenerIndex(param.args);
                 if (index < 0) {
                     return;
                 }
-                LocationListener original = (LocationListener) param.args[index];
-                if (original == null) {
+                LocationListener wrapper = existingWrapper((LocationListener) param.args[index]);
+                if (wrapper != null) {
+                    param.args[index] = wrapper;
+                }
+            }
+        });
+    }
+
+    /**
+     * PendingIntent 方式的更新由系统直接发给 App 的组件，中途没有监听器可包装，只能在 App 取出
+     * {@link LocationManager#KEY_LOCATION_CHANGED}/{@link LocationManager#KEY_LOCATIONS} 时原地改写。
+     * 先判断结果类型，与定位无关的 extra 只多一次 instanceof。
+     */
+    private static void hookPendingIntentUpdates() {
+        XposedBridge.hookAllMethods(Intent.class, "getParcelableExtra", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                Object result = param.getResult();
+                if (!(result instanceof Location) || !LocationManager.KEY_LOCATION_CHANGED.equals(param.args[0])) {
+                    return;
+                }
+                LocationState active = getActiveState();
+                if (active != null) {
+                    buildLocationInPlace((Location) result, active);
+                }
+            }
+        });
+
+        // 系统以 Location[] 放入 KEY_LOCATIONS，App 通过 getParcelableArrayExtra 取出
+        XposedBridge.hookAllMethods(Intent.class, "getParcelableArrayExtra", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                Object result = param.getResult();
+                if (!(result instanceof Object[]) || !LocationManager.KEY_LOCATIONS.equals(param.args[0])) {
+                    return;
+                }
+                LocationState active = getActiveState();
+                if (active != null) {
+                    buildBatchInPlace(Arrays.asList((Object[]) result), active);
+                }
+            }
+        });
+
+        // 兜底：少数封装库会以 ArrayList 形式转存
+        XposedBridge.hookAllMethods(Intent.class, "getParcelableArrayListExtra", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                Object result = param.getResult();
+                if (!(result instanceof List) || !LocationManager.KEY_LOCATIONS.equals(param.args[0])) {
                     return;
                 }
-                param.args[index] = wrapListener(original);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    buildBatchInPlace((List<?>) result, active);
+                }
             }
         });
     }
 
+    /**
+     * 包装监听器以改写真实定位，同时交给 {@link LocationScheduler} 按请求的频率主动推送合成定位，
+     * 真实定位源一直不出点时 App 也能收到回调。
+     */
+    private static void wrapAndSchedule(Object[] args, boolean oneShot) {
+        if (getActiveState() == null) {
+            return;
+        }
+        int index = findListenerIndex(args);
+        if (index < 0) {
+            return;
+        }
+        LocationListener original = (LocationListener) args[index];
+        if (original == null) {
+            return;
+        }
+        args[index] = wrapperFor(original);
+        long minTimeMs = 0L;
+        float minDistanceM = 0f;
+        Looper looper = null;
+        Executor executor = null;
+        boolean seenTime = false;
+        boolean seenDistance = false;
+        for (Object arg : args) {
+            if (arg instanceof Long && !seenTime) {
+                minTimeMs = (Long) arg;
+                seenTime = true;
+            } else if (arg instanceof Float && !seenDistance) {
+                minDistanceM = (Float) arg;
+                seenDistance = true;
+            } else if (Build.VERSION.SDK_INT >= 31 && arg instanceof LocationRequest) {
+                LocationRequest request = (LocationRequest) arg;
+                minTimeMs = request.getIntervalMillis();
+                minDistanceM = request.getMinUpdateDistanceMeters();
+                seenTime = true;
+                seenDistance = true;
+            } else if (arg instanceof Looper) {
+                looper = (Looper) arg;
+            } else if (arg instanceof Executor) {
+                executor = (Executor) arg;
+            }
+        }
+        LocationScheduler.shared().request(original, minTimeMs, minDistanceM, looper, executor, oneShot);
+    }
+
+    /**
+     * 进程内所有 Location 的 getter 一律返回伪造值，App 自己构造的 Location（测距、地图绘制）也会被改写并付出
+     * Hook 分发开销。模块交出的 Location 都已通过 setter 原地写入，默认不安装；只有定位经由未覆盖的途径
+     * （如 Play 服务的融合定位，由 Parcel 直接构造）进入 App 时才需要用 {@code locationGlobalGetters} 打开。
+     */
     private static void hookLocation() {
         XposedBridge.hookAllMethods(Location.class, "getLatitude", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                Config config = getActiveConfig();
-                if (config != null) {
-                    param.setResult(config.latitude);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    param.setResult(active.fix().latitudeValue);
                 }
             }
         });
@@ -101,9 +285,9 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getLongitude", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                Config config = getActiveConfig();
-                if (config != null) {
-                    param.setResult(config.longitude);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    param.setResult(active.fix().longitudeValue);
                 }
             }
         });
@@ -111,8 +295,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getAccuracy", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(DEFAULT_ACCURACY);
+                if (getActiveState() != null) {
+                    param.setResult(LocationState.ACCURACY_VALUE);
                 }
             }
         });
@@ -120,8 +304,9 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getAltitude", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(DEFAULT_ALTITUDE);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    param.setResult(active.fix().altitudeValue);
                 }
             }
         });
@@ -129,8 +314,9 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getSpeed", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(DEFAULT_SPEED);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    param.setResult(active.fix().speedValue);
                 }
             }
         });
@@ -138,8 +324,9 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getBearing", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(DEFAULT_BEARING);
+                LocationState active = getActiveState();
+                if (active != null) {
+                    param.setResult(active.fix().bearingValue);
                 }
             }
         });
@@ -147,8 +334,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getProvider", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(DEFAULT_PROVIDER);
+                if (getActiveState() != null) {
+                    param.setResult(LocationState.DEFAULT_PROVIDER);
                 }
             }
         });
@@ -156,8 +343,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getTime", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(System.currentTimeMillis());
+                if (getActiveState() != null) {
+                    param.setResult(currentClock().timeValue);
                 }
             }
         });
@@ -165,8 +352,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "getElapsedRealtimeNanos", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(SystemClock.elapsedRealtimeNanos());
+                if (getActiveState() != null) {
+                    param.setResult(currentClock().elapsedRealtimeNanosValue);
                 }
             }
         });
@@ -174,8 +361,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "hasAccuracy", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(true);
+                if (getActiveState() != null) {
+                    param.setResult(Boolean.TRUE);
                 }
             }
         });
@@ -183,8 +370,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "hasAltitude", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(true);
+                if (getActiveState() != null) {
+                    param.setResult(Boolean.TRUE);
                 }
             }
         });
@@ -192,8 +379,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "hasSpeed", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(true);
+                if (getActiveState() != null) {
+                    param.setResult(Boolean.TRUE);
                 }
             }
         });
@@ -201,8 +388,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "hasBearing", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(true);
+                if (getActiveState() != null) {
+                    param.setResult(Boolean.TRUE);
                 }
             }
         });
@@ -210,8 +397,8 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Location.class, "isFromMockProvider", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() != null) {
-                    param.setResult(false);
+                if (getActiveState() != null) {
+                    param.setResult(Boolean.FALSE);
                 }
             }
         });
@@ -221,7 +408,7 @@ public final class LocationHook {
         XposedBridge.hookAllMethods(Settings.Secure.class, "getInt", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (getActiveConfig() == null) {
+                if (getActiveState() == null) {
                     return;
                 }
                 if (param.args == null || param.args.length < 2) {
@@ -240,12 +427,32 @@ public final class LocationHook {
     }
 
     @Nullable
-    private static Config getActiveConfig() {
-        Config config = ConfigLoader.get();
-        if (!config.enabled || !config.enableLocation) {
+    private static LocationState getActiveState() {
+        if (REENTRANCY.get()[0] > 0) {
             return null;
         }
-        return config;
+        return resolveState(ConfigLoader.get());
+    }
+
+    @Nullable
+    static LocationState resolveState(@NonNull Config config) {
+        LocationState local = state;
+        if (local.config != config) {
+            local = new LocationState(config);
+            state = local;
+        }
+        return local.active ? local : null;
+    }
+
+    @NonNull
+    private static ClockValues currentClock() {
+        ClockValues local = clock;
+        long now = System.currentTimeMillis();
+        if (now - local.timeMs >= CLOCK_GRANULARITY_MS || now < local.timeMs) {
+            local = new ClockValues(now, SystemClock.elapsedRealtimeNanos());
+            clock = local;
+        }
+        return local;
     }
 
     private static int findListenerIndex(Object[] args) {
@@ -260,16 +467,97 @@ public final class LocationHook {
         return -1;
     }
 
-    private static LocationListener wrapListener(LocationListener original) {
+    /**
+     * 同一个监听器始终对应同一个包装：重复注册时系统按包装去重，removeUpdates(original) 也能找到它。
+     * 与 LocationManager 自己的 transport 表一样，键弱引用原监听器，值弱引用包装，系统放掉包装后条目随之回收。
+     */
+    @NonNull
+    private static LocationListener wrapperFor(@NonNull LocationListener original) {
+        synchronized (WRAPPERS) {
+            drainCollectedWrappers();
+            WeakReference<LocationListener> ref = WRAPPERS.get(original);
+            LocationListener wrapper = ref != null ? ref.get() : null;
+            if (wrapper == null) {
+                wrapper = wrapListener(original);
+                WeakReference<LocationListener> tracked = new WeakReference<>(wrapper, COLLECTED_WRAPPERS);
+                WRAPPERS.put(original, tracked);
+                TRACKED_WRAPPERS.add(tracked);
+                Logger.log("定位监听包装: " + original.getClass().getName() + ", live=" + LIVE_WRAPPERS.incrementAndGet());
+            }
+            return wrapper;
+        }
+    }
+
+    @Nullable
+    private static LocationListener existingWrapper(@NonNull LocationListener original) {
+        synchronized (WRAPPERS) {
+            WeakReference<LocationListener> ref = WRAPPERS.get(original);
+            return ref != null ? ref.get() : null;
+        }
+    }
+
+    @Nullable
+    private static LocationListener releaseWrapper(@NonNull LocationListener original) {
+        synchronized (WRAPPERS) {
+            drainCollectedWrappers();
+            WeakReference<LocationListener> ref = WRAPPERS.remove(original);
+            if (ref == null) {
+                return null;
+            }
+            if (TRACKED_WRAPPERS.remove(ref)) {
+                LIVE_WRAPPERS.decrementAndGet();
+            }
+            return ref.get();
+        }
+    }
+
+    private static void drainCollectedWrappers() {
+        Reference<? extends LocationListener> ref;
+        while ((ref = COLLECTED_WRAPPERS.poll()) != null) {
+            if (TRACKED_WRAPPERS.remove(ref)) {
+                LIVE_WRAPPERS.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 尚未注销且未被回收的监听包装数量；App 反复注册/注销后仍持续增长说明有监听器泄漏。
+     */
+    static int getLiveWrappers() {
+        synchronized (WRAPPERS) {
+            drainCollectedWrappers();
+            return LIVE_WRAPPERS.get();
+        }
+    }
+
+    @NonNull
+    private static LocationListener wrapListener(@NonNull LocationListener original) {
         return new LocationListener() {
             @Override
             public void onLocationChanged(Location location) {
-                Config config = getActiveConfig();
-                if (config == null) {
+                LocationState active = getActiveState();
+                if (active == null) {
                     original.onLocationChanged(location);
                     return;
                 }
-                original.onLocationChanged(buildLocationInPlace(location, config));
+                original.onLocationChanged(buildLocationInPlace(location, active));
+            }
+
+            /**
+             * API 31 批量投递：整批原地改写后作为一个 List 交给 App，不拆成 N 次单点回调。
+             */
+            @Override
+            public void onLocationChanged(@NonNull List<Location> locations) {
+                LocationState active = getActiveState();
+                if (active != null) {
+                    buildBatchInPlace(locations, active);
+                }
+                original.onLocationChanged(locations);
+            }
+
+            @Override
+            public void onFlushComplete(int requestCode) {
+                original.onFlushComplete(requestCode);
             }
 
             @Override
@@ -289,24 +577,51 @@ public final class LocationHook {
         };
     }
 
-    private static Location buildLocation(@Nullable Location base, Config config) {
-        return buildLocationInPlace(base != null ? new Location(base) : null, config);
-    }
-
-    private static Location buildLocationInPlace(@Nullable Location target, Config config) {
+    static Location buildLocationInPlace(@Nullable Location target, @NonNull LocationState active) {
+        long timeMs = System.currentTimeMillis();
+        long elapsedRealtimeNanos = SystemClock.elapsedRealtimeNanos();
         if (target == null) {
-            target = new Location(DEFAULT_PROVIDER);
-        } else if (target.getProvider() == null) {
-            target.setProvider(DEFAULT_PROVIDER);
+            return active.newLocation(timeMs, elapsedRealtimeNanos);
+        }
+        int[] depth = REENTRANCY.get();
+        depth[0]++;
+        try {
+            active.applyTo(target, timeMs, elapsedRealtimeNanos);
+        } finally {
+            depth[0]--;
         }
-        target.setLatitude(config.latitude);
-        target.setLongitude(config.longitude);
-        target.setAccuracy(DEFAULT_ACCURACY);
-        target.setAltitude(DEFAULT_ALTITUDE);
-        target.setSpeed(DEFAULT_SPEED);
-        target.setBearing(DEFAULT_BEARING);
-        target.setTime(System.currentTimeMillis());
-        target.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
         return target;
     }
+
+    /**
+     * 批量定位逐个原地改写，保留每个点自己的时间戳，批内顺序与间隔不变。
+     */
+    static void buildBatchInPlace(@NonNull List<?> locations, @NonNull LocationState active) {
+        int[] depth = REENTRANCY.get();
+        depth[0]++;
+        try {
+            for (int i = 0, n = locations.size(); i < n; i++) {
+                Object item = locations.get(i);
+                if (!(item instanceof Location)) {
+                    continue;
+                }
+                Location target = (Location) item;
+                active.applyTo(target, target.getTime(), target.getElapsedRealtimeNanos());
+            }
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    private static final class ClockValues {
+        final long timeMs;
+        final Long timeValue;
+        final Long elapsedRealtimeNanosValue;
+
+        ClockValues(long timeMs, long elapsedRealtimeNanos) {
+            this.timeMs = timeMs;
+            this.timeValue = timeMs;
+            this.elapsedRealtimeNanosValue = elapsedRealtimeNanos;
+        }
+    }
 }
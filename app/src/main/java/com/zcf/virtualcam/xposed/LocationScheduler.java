@@ -0,0 +1,325 @@
+package com.zcf.virtualcam.xposed;
+
+import android.location.Location;
+import android.location.LocationListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 主动推送合成定位：真实定位源可能一直不出点（室内），等待 requestLocationUpdates 的 App 会卡住。
+ * <p>
+ * 每个进程一条 HandlerThread 驱动一个时间轮（{@link #SLOTS} 槽 × {@link #TICK_MS}ms），按 minTime/minDistance
+ * 在监听器自己的 Looper 或 Executor 上回调；每次回调交出一个新的 Location（App 可能保留或修改它，不能复用），
+ * 投递中的回调未执行完时跳过本次。时间轮只在调度线程上读写，注册/注销经由加锁的映射表和 volatile 标记交接。
+ */
+final class LocationScheduler {
+
+    static final long TICK_MS = 10L;
+    static final int SLOTS = 512;
+    static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    private static final int MASK = SLOTS - 1;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile LocationScheduler shared;
+
+    @Nullable
+    private final Handler handler;
+    private final Object lock = new Object();
+    private final Map<LocationListener, Registration> registrations = new IdentityHashMap<>();
+    private final Registration[] slots = new Registration[SLOTS];
+    private final Runnable tick = this::onTick;
+    private int cursor;
+    private long cursorMs = Long.MIN_VALUE;
+
+    /**
+     * handler 为 null 时不自带线程，由调用方自行调用 {@link #tick}（基准测试用）。
+     */
+    LocationScheduler(@Nullable Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 调度线程尚未创建时返回 null，注销路径不必为此拉起线程。
+     */
+    @Nullable
+    static LocationScheduler peek() {
+        return shared;
+    }
+
+    @NonNull
+    static LocationScheduler shared() {
+        LocationScheduler local = shared;
+        if (local != null) {
+            return local;
+        }
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                HandlerThread thread = new HandlerThread("VirtualCam-location");
+                thread.start();
+                shared = new LocationScheduler(new Handler(thread.getLooper()));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * 为监听器安排合成定位；同一个监听器重复注册时替换旧的参数，与 LocationManager 的语义一致。
+     * looper 与 executor 都为 null 时回调到调用线程的 Looper（没有则主线程）。
+     */
+    void request(@NonNull LocationListener listener, long minTimeMs, float minDistanceM,
+                 @Nullable Looper looper, @Nullable Executor executor, boolean oneShot) {
+        Registration registration;
+        if (executor != null) {
+            registration = new Registration(this, listener, minTimeMs, minDistanceM, executor, null, oneShot);
+        } else {
+            Looper target = looper != null ? looper : Looper.myLooper();
+            registration = new Registration(this, listener, minTimeMs, minDistanceM, null,
+                    new Handler(target != null ? target : Looper.getMainLooper()), oneShot);
+        }
+        Registration previous;
+        synchronized (lock) {
+            previous = registrations.put(listener, registration);
+        }
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        if (handler == null) {
+            add(registration, SystemClock.uptimeMillis());
+        } else {
+            handler.post(() -> add(registration, SystemClock.uptimeMillis()));
+        }
+    }
+
+    /**
+     * 注销后不会再回调，包括已经投递到目标线程但尚未执行的那一次。
+     */
+    void remove(@NonNull LocationListener listener) {
+        Registration previous;
+        synchronized (lock) {
+            previous = registrations.remove(listener);
+        }
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+    }
+
+    int size() {
+        synchronized (lock) {
+            return registrations.size();
+        }
+    }
+
+    private void onTick() {
+        long now = SystemClock.uptimeMillis();
+        tick(now, LocationHook.resolveState(ConfigLoader.get()));
+        scheduleNext(now);
+    }
+
+    private void add(@NonNull Registration registration, long now) {
+        if (registration.cancelled) {
+            return;
+        }
+        if (cursorMs == Long.MIN_VALUE) {
+            cursorMs = now - now % TICK_MS;
+        } else if (handler != null) {
+            tick(now, LocationHook.resolveState(ConfigLoader.get()));
+        }
+        // 第一次在下一个 tick 送达，不等满一个间隔
+        insert(registration, now);
+        if (handler != null) {
+            scheduleNext(now);
+        }
+    }
+
+    /**
+     * 把时间轮推进到 now 并送达到期的注册，返回本次送达的次数。只能在调度线程上调用。
+     * 调度线程被卡住超过一圈时只补走一圈，长间隔的注册会相应晚到，不会连发。
+     */
+    int tick(long now, @Nullable LocationState active) {
+        if (cursorMs == Long.MIN_VALUE) {
+            cursorMs = now - now % TICK_MS;
+            return 0;
+        }
+        long steps = (now - cursorMs) / TICK_MS;
+        if (steps <= 0L) {
+            return 0;
+        }
+        if (steps > SLOTS) {
+            cursorMs += (steps - SLOTS) * TICK_MS;
+            steps = SLOTS;
+        }
+        long timeMs = System.currentTimeMillis();
+        long elapsedRealtimeNanos = SystemClock.elapsedRealtimeNanos();
+        int delivered = 0;
+        for (long s = 0L; s < steps; s++) {
+            cursor = (cursor + 1) & MASK;
+            cursorMs += TICK_MS;
+            Registration r = slots[cursor];
+            slots[cursor] = null;
+            while (r != null) {
+                Registration next = r.next;
+                r.next = null;
+                if (r.cancelled) {
+                    r = next;
+                    continue;
+                }
+                if (r.rounds > 0) {
+                    r.rounds--;
+                    link(r, cursor);
+                } else {
+                    if (active != null && r.fire(active, timeMs, elapsedRealtimeNanos)) {
+                        delivered++;
+                    }
+                    if (!r.cancelled && !r.finished) {
+                        insert(r, cursorMs + r.intervalMs);
+                    }
+                }
+                r = next;
+            }
+        }
+        return delivered;
+    }
+
+    private void insert(@NonNull Registration r, long dueMs) {
+        long ticks = (dueMs - cursorMs + TICK_MS - 1L) / TICK_MS;
+        if (ticks < 1L) {
+            ticks = 1L;
+        }
+        r.rounds = (int) ((ticks - 1L) / SLOTS);
+        link(r, (int) ((cursor + ticks) & MASK));
+    }
+
+    private void link(@NonNull Registration r, int slot) {
+        r.next = slots[slot];
+        slots[slot] = r;
+    }
+
+    /**
+     * 只在下一个非空槽唤醒，1Hz 的监听器不会让调度线程每 10ms 醒一次；时间轮空了就停下，等下一次注册。
+     */
+    private void scheduleNext(long now) {
+        Handler local = handler;
+        if (local == null) {
+            return;
+        }
+        local.removeCallbacks(tick);
+        for (int i = 1; i <= SLOTS; i++) {
+            if (slots[(cursor + i) & MASK] != null) {
+                local.postAtTime(tick, Math.max(now, cursorMs + i * TICK_MS));
+                return;
+            }
+        }
+    }
+
+    private void forget(@NonNull Registration registration) {
+        synchronized (lock) {
+            if (registrations.get(registration.listener) == registration) {
+                registrations.remove(registration.listener);
+            }
+        }
+    }
+
+    private static final class Registration implements Runnable {
+        @NonNull
+        final LocationScheduler owner;
+        @NonNull
+        final LocationListener listener;
+        final long intervalMs;
+        final float minDistanceM;
+        @Nullable
+        final Executor executor;
+        @Nullable
+        final Handler target;
+        final boolean oneShot;
+
+        volatile boolean cancelled;
+        volatile boolean pending;
+        boolean finished;
+        @Nullable
+        Location delivering;
+        boolean hasLast;
+        double lastLatitude;
+        double lastLongitude;
+
+        Registration next;
+        int rounds;
+
+        Registration(@NonNull LocationScheduler owner, @NonNull LocationListener listener, long minTimeMs,
+                     float minDistanceM, @Nullable Executor executor, @Nullable Handler target, boolean oneShot) {
+            this.owner = owner;
+            this.listener = listener;
+            this.intervalMs = minTimeMs <= 0L ? DEFAULT_INTERVAL_MS : Math.max(minTimeMs, TICK_MS);
+            this.minDistanceM = minDistanceM;
+            this.executor = executor;
+            this.target = target;
+            this.oneShot = oneShot;
+        }
+
+        /**
+         * 在调度线程上生成本次的 Location 并投递；上一次还在目标线程排队时跳过，避免回调堆积。
+         */
+        boolean fire(@NonNull LocationState active, long timeMs, long elapsedRealtimeNanos) {
+            if (pending) {
+                return false;
+            }
+            LocationState.Fix fix = active.fix();
+            if (minDistanceM > 0f && hasLast && TrackImporter.distanceMeters(lastLatitude, lastLongitude,
+                    fix.latitude, fix.longitude) < minDistanceM) {
+                return false;
+            }
+            hasLast = true;
+            lastLatitude = fix.latitude;
+            lastLongitude = fix.longitude;
+            delivering = active.newLocation(timeMs, elapsedRealtimeNanos);
+            pending = true;
+            if (oneShot) {
+                finished = true;
+                owner.forget(this);
+            }
+            if (executor != null) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // App 已关闭自己的 Executor：按注销处理，时间轮下次经过时丢弃
+                    pending = false;
+                    cancelled = true;
+                    owner.forget(this);
+                    Logger.log("合成定位投递被拒绝，已注销: " + listener.getClass().getName());
+                    return false;
+                }
+            } else if (target != null && !target.post(this)) {
+                // 目标 Looper 已退出
+                pending = false;
+                cancelled = true;
+                owner.forget(this);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Location location = delivering;
+            try {
+                if (location != null && !cancelled) {
+                    listener.onLocationChanged(location);
+                }
+            } catch (Throwable t) {
+                Logger.log("合成定位回调异常:", t);
+            } finally {
+                pending = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.zcf.virtualcam.xposed;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Method;
+
+final class LocationState {
+
+    static final String DEFAULT_PROVIDER = "gps";
+    static final float DEFAULT_ACCURACY = 5.0f;
+    static final double DEFAULT_ALTITUDE = 0.0d;
+    static final float DEFAULT_SPEED = 0.0f;
+    static final float DEFAULT_BEARING = 0.0f;
+
+    static final Float ACCURACY_VALUE = DEFAULT_ACCURACY;
+
+    private static final long FIX_GRANULARITY_MS = 10L;
+    private static final long TRACK_RETRY_MS = 1000L;
+    private static final Method SET_FROM_MOCK_PROVIDER = resolveSetFromMockProvider();
+
+    @NonNull
+    final Config config;
+    final boolean active;
+    final double latitude;
+    final double longitude;
+    @NonNull
+    private final Fix fixed;
+    @NonNull
+    private final Location template;
+
+    private volatile boolean trackMissing;
+    private volatile long trackCheckedAtMs;
+    private volatile long anchorMs = Long.MIN_VALUE;
+    @Nullable
+    private volatile Fix last;
+
+    LocationState(@NonNull Config config) {
+        this.config = config;
+        this.active = config.enabled && config.enableLocation;
+        this.latitude = config.latitude;
+        this.longitude = config.longitude;
+        this.fixed = new Fix(latitude, longitude, DEFAULT_ALTITUDE, DEFAULT_SPEED, DEFAULT_BEARING, 0L);
+        this.template = new Location(DEFAULT_PROVIDER);
+        applyValues(template, fixed);
+    }
+
+    /**
+     * 当前位置：未配置轨迹时为固定坐标；配置了轨迹时按经过的时间插值，10ms 内的调用共用同一个结果。
+     */
+    @NonNull
+    Fix fix() {
+        if (config.trackPath.isEmpty()) {
+            return fixed;
+        }
+        TrackSource source = track();
+        if (source == null) {
+            return fixed;
+        }
+        long now = SystemClock.elapsedRealtime();
+        Fix local = last;
+        if (local != null && now >= local.atMs && now - local.atMs < FIX_GRANULARITY_MS) {
+            return local;
+        }
+        long elapsed;
+        if (config.trackStartMs > 0L) {
+            elapsed = System.currentTimeMillis() - config.trackStartMs;
+        } else {
+            if (anchorMs == Long.MIN_VALUE) {
+                anchorMs = now;
+            }
+            elapsed = now - anchorMs;
+        }
+        local = source.sample(elapsed, config.trackLoop, now);
+        last = local;
+        return local;
+    }
+
+    /**
+     * 每次都经由 {@link TrackSource#current}：它的快路径只是一次 volatile 读，并负责 5s 一次的重扫，
+     * 同一路径下的 GPX/CSV 被修改或重新导出后会自动切换。只对尚未就绪的情况限流重试。
+     */
+    @Nullable
+    private TrackSource track() {
+        if (trackMissing && SystemClock.uptimeMillis() - trackCheckedAtMs < TRACK_RETRY_MS) {
+            return null;
+        }
+        TrackSource source = TrackSource.current(config.trackPath);
+        if (source == null) {
+            trackCheckedAtMs = SystemClock.uptimeMillis();
+        }
+        trackMissing = source == null;
+        return source;
+    }
+
+    void applyTo(@NonNull Location target, long timeMs, long elapsedRealtimeNanos) {
+        applyValues(target, fix());
+        target.setTime(timeMs);
+        target.setElapsedRealtimeNanos(elapsedRealtimeNanos);
+    }
+
+    @NonNull
+    Location newLocation(long timeMs, long elapsedRealtimeNanos) {
+        Location location = new Location(template);
+        Fix current = fix();
+        if (current != fixed) {
+            applyValues(location, current);
+        }
+        location.setTime(timeMs);
+        location.setElapsedRealtimeNanos(elapsedRealtimeNanos);
+        return location;
+    }
+
+    /**
+     * 所有值都经 setter 写进实例本身（has* 标记随之置位），交给 App 之后不依赖任何 getter Hook。
+     */
+    private static void applyValues(@NonNull Location target, @NonNull Fix fix) {
+        target.setProvider(DEFAULT_PROVIDER);
+        target.setLatitude(fix.latitude);
+        target.setLongitude(fix.longitude);
+        target.setAccuracy(DEFAULT_ACCURACY);
+        target.setAltitude(fix.altitude);
+        target.setSpeed(fix.speed);
+        target.setBearing(fix.bearing);
+        if (target.isFromMockProvider()) {
+            clearMock(target);
+        }
+    }
+
+    private static void clearMock(@NonNull Location target) {
+        if (Build.VERSION.SDK_INT >= 31) {
+            target.setMock(false);
+        } else if (SET_FROM_MOCK_PROVIDER != null) {
+            try {
+                SET_FROM_MOCK_PROVIDER.invoke(target, false);
+            } catch (Throwable ignored) {
+            }
+        }
+    }
+
+    @Nullable
+    private static Method resolveSetFromMockProvider() {
+        try {
+            return Location.class.getMethod("setIsFromMockProvider", boolean.class);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * 某一时刻的位置，同时缓存 getter Hook 需要的装箱值。
+     */
+    static final class Fix {
+        final double latitude;
+        final double longitude;
+        final double altitude;
+        final float speed;
+        final float bearing;
+        final long atMs;
+        @NonNull
+        final Double latitudeValue;
+        @NonNull
+        final Double longitudeValue;
+        @NonNull
+        final Double altitudeValue;
+        @NonNull
+        final Float speedValue;
+        @NonNull
+        final Float bearingValue;
+
+        Fix(double latitude, double longitude, double altitude, float speed, float bearing, long atMs) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+            this.speed = speed;
+            this.bearing = bearing;
+            this.atMs = atMs;
+            this.latitudeValue = latitude;
+            this.longitudeValue = longitude;
+            this.altitudeValue = altitude;
+            this.speedValue = speed;
+            this.bearingValue = bearing;
+        }
+    }
+}
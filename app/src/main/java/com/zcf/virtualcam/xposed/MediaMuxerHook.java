@@ -0,0 +1,175 @@
+package com.zcf.virtualcam.xposed;
+
+import android.media.MediaMuxer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * MediaCodec + MediaMuxer 录像链路的输出替换：记录每个 MediaMuxer 的输出路径，start 时预暂存素材，stop/release 时提交。
+ */
+public final class MediaMuxerHook {
+
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean(false);
+
+    private static final Map<MediaMuxer, MuxerState> MUXERS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private MediaMuxerHook() {
+    }
+
+    public static void install() {
+        if (!INSTALLED.compareAndSet(false, true)) {
+            return;
+        }
+
+        XposedBridge.hookAllConstructors(MediaMuxer.class, new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (!param.hasThrowable()) {
+                    onCreated(param.thisObject, param.args);
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(MediaMuxer.class, "start", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.hasThrowable() || !(param.thisObject instanceof MediaMuxer)) {
+                    return;
+                }
+                MediaMuxer muxer = (MediaMuxer) param.thisObject;
+                Config config = ConfigLoader.get();
+                MuxerState state = targetState(muxer, config);
+                if (state == null) {
+                    return;
+                }
+                state.started = true;
+                state.dropSamples = config.muxerDropSamples;
+                VideoStager.stage(muxer, new File(config.videoPath), new File(state.output), config.videoHardLink);
+            }
+        });
+
+        XposedBridge.hookAllMethods(MediaMuxer.class, "writeSampleData", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                MuxerState state = MUXERS.get(param.thisObject);
+                if (state == null || !state.dropSamples || param.args == null || param.args.length < 1
+                        || !(param.args[0] instanceof Integer)) {
+                    return;
+                }
+                int track = (Integer) param.args[0];
+                synchronized (state) {
+                    // 每条轨道保留第一个样本，保证 stop() 时容器仍然有效
+                    if (track < 0 || !state.written.get(track)) {
+                        if (track >= 0) {
+                            state.written.set(track);
+                        }
+                        return;
+                    }
+                    state.dropped++;
+                }
+                param.setResult(null);
+            }
+        });
+
+        XposedBridge.hookAllMethods(MediaMuxer.class, "stop", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.thisObject instanceof MediaMuxer) {
+                    finish((MediaMuxer) param.thisObject, param.hasThrowable());
+                }
+            }
+        });
+
+        // release() 在 STARTED 状态下直接调用 nativeStop，不经过 stop()，因此这里同样提交
+        XposedBridge.hookAllMethods(MediaMuxer.class, "release", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.thisObject instanceof MediaMuxer) {
+                    finish((MediaMuxer) param.thisObject, param.hasThrowable());
+                }
+            }
+        });
+    }
+
+    /**
+     * 构造完成后记录输出路径；延迟安装时由触发 Hook 对第一个 MediaMuxer 补调。
+     */
+    static void onCreated(@Nullable Object muxer, @Nullable Object[] args) {
+        if (!(muxer instanceof MediaMuxer) || args == null || args.length < 1) {
+            return;
+        }
+        Object target = args[0];
+        String output = null;
+        if (target instanceof String) {
+            output = (String) target;
+        } else if (target instanceof FileDescriptor) {
+            output = MediaRecorderHook.tryResolvePathFromFd((FileDescriptor) target);
+        }
+        if (output != null && !output.trim().isEmpty()) {
+            MUXERS.put((MediaMuxer) muxer, new MuxerState(output));
+        }
+    }
+
+    private static void finish(@NonNull MediaMuxer muxer, boolean failed) {
+        MuxerState state = MUXERS.remove(muxer);
+        if (state == null || !state.started) {
+            VideoStager.discard(muxer);
+            return;
+        }
+        Config config = ConfigLoader.get();
+        if (failed || targetOutput(state, config) == null) {
+            VideoStager.discard(muxer);
+            return;
+        }
+        try {
+            FileOps.ReplaceResult result = VideoStager.commit(
+                    muxer, new File(config.videoPath), new File(state.output), config.videoHardLink,
+                    config.videoAsyncCommit);
+            Logger.log("覆盖 MediaMuxer 输出" + (result != null ? "完成: " + state.output + " (" + result + ")"
+                    : "已转入后台: " + state.output) + (state.dropSamples ? ", 跳过样本 " + state.dropped : ""));
+        } catch (Exception e) {
+            Logger.log("覆盖 MediaMuxer 输出失败:", e);
+        }
+    }
+
+    @Nullable
+    private static MuxerState targetState(@NonNull MediaMuxer muxer, @NonNull Config config) {
+        MuxerState state = MUXERS.get(muxer);
+        return state != null && targetOutput(state, config) != null ? state : null;
+    }
+
+    @Nullable
+    private static String targetOutput(@NonNull MuxerState state, @NonNull Config config) {
+        if (!config.enabled || !config.enableVideo || state.output.equals(config.videoPath)) {
+            return null;
+        }
+        return state.output;
+    }
+
+    private static final class MuxerState {
+        @NonNull
+        final String output;
+        @NonNull
+        final BitSet written = new BitSet();
+        volatile boolean started;
+        volatile boolean dropSamples;
+        long dropped;
+
+        MuxerState(@NonNull String output) {
+            this.output = output;
+        }
+    }
+}
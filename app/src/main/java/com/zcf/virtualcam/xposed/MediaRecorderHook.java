@@ -5,6 +5,7 @@ import android.os.Build;
 
 import java.io.File;
 import java.io.FileDescriptor;
+import java.lang.ref.Reference;
 import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.Map;
@@ -12,14 +13,18 @@ import java.util.WeakHashMap;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
-import de.robv.android.xposed.XposedHelpers;
 
 public final class MediaRecorderHook {
 
     private MediaRecorderHook() {
     }
 
-    private static final Map<MediaRecorder, String> OUTPUT_PATHS =
+    private static final int MEDIA_RECORDER_EVENT_INFO = 1;
+    private static final int MEDIA_RECORDER_INFO_NEXT_OUTPUT_FILE_STARTED = 803;
+
+    private static final Field DESCRIPTOR_FIELD = findDescriptorField();
+
+    private static final Map<MediaRecorder, Session> SESSIONS =
             Collections.synchronizedMap(new WeakHashMap<>());
 
     private static volatile boolean installed = false;
@@ -30,79 +35,203 @@ public final class MediaRecorderHook {
         }
         installed = true;
 
-        XposedHelpers.findAndHookMethod(MediaRecorder.class, "setOutputFile", String.class, new XC_MethodHook() {
+        XposedBridge.hookAllMethods(MediaRecorder.class, "setOutputFile", new XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) {
-                if (param.thisObject instanceof MediaRecorder && param.args != null && param.args.length == 1) {
-                    Object path = param.args[0];
-                    if (path instanceof String) {
-                        OUTPUT_PATHS.put((MediaRecorder) param.thisObject, (String) path);
-                    }
+                if (!(param.thisObject instanceof MediaRecorder) || param.args == null || param.args.length != 1) {
+                    return;
+                }
+                MediaRecorder recorder = (MediaRecorder) param.thisObject;
+                String output = resolveOutput(param.args[0]);
+                if (output != null) {
+                    sessionOf(recorder).output = output;
+                } else {
+                    SESSIONS.remove(recorder);
                 }
             }
         });
 
-        XposedHelpers.findAndHookMethod(MediaRecorder.class, "setOutputFile", FileDescriptor.class, new XC_MethodHook() {
+        XposedBridge.hookAllMethods(MediaRecorder.class, "setNextOutputFile", new XC_MethodHook() {
             @Override
-            protected void beforeHookedMethod(MethodHookParam param) {
-                if (!(param.thisObject instanceof MediaRecorder) || param.args == null || param.args.length != 1) {
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (param.hasThrowable() || !(param.thisObject instanceof MediaRecorder)
+                        || param.args == null || param.args.length != 1) {
                     return;
                 }
-                Object fdObj = param.args[0];
-                if (!(fdObj instanceof FileDescriptor)) {
+                String next = resolveOutput(param.args[0]);
+                Session session = SESSIONS.get(param.thisObject);
+                if (session != null) {
+                    session.nextOutput = next;
+                }
+            }
+        });
+
+        XposedBridge.hookAllMethods(MediaRecorder.class, "postEventFromNative", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                Object[] args = param.args;
+                if (args == null || args.length < 3 || !(args[0] instanceof Reference)
+                        || !Integer.valueOf(MEDIA_RECORDER_EVENT_INFO).equals(args[1])
+                        || !Integer.valueOf(MEDIA_RECORDER_INFO_NEXT_OUTPUT_FILE_STARTED).equals(args[2])) {
                     return;
                 }
-                String resolved = tryResolvePathFromFd((FileDescriptor) fdObj);
-                if (resolved != null) {
-                    OUTPUT_PATHS.put((MediaRecorder) param.thisObject, resolved);
+                Object recorder = ((Reference<?>) args[0]).get();
+                if (recorder instanceof MediaRecorder) {
+                    rotate((MediaRecorder) recorder);
                 }
             }
         });
 
-        XposedBridge.hookAllMethods(MediaRecorder.class, "stop", new XC_MethodHook() {
+        XposedBridge.hookAllMethods(MediaRecorder.class, "start", new XC_MethodHook() {
             @Override
             protected void afterHookedMethod(MethodHookParam param) {
-                if (param.hasThrowable()) {
-                    return;
-                }
-                if (!(param.thisObject instanceof MediaRecorder)) {
+                if (param.hasThrowable() || !(param.thisObject instanceof MediaRecorder)) {
                     return;
                 }
                 MediaRecorder recorder = (MediaRecorder) param.thisObject;
                 Config config = ConfigLoader.get();
-                if (!config.enabled || !config.enableVideo) {
+                String output = targetOutput(SESSIONS.get(recorder), config);
+                if (output == null) {
                     return;
                 }
-                String output = OUTPUT_PATHS.remove(recorder);
-                if (output == null || output.trim().isEmpty()) {
+                VideoStager.stage(recorder, new File(config.videoPath), new File(output), config.videoHardLink);
+            }
+        });
+
+        XposedBridge.hookAllMethods(MediaRecorder.class, "stop", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) {
+                if (!(param.thisObject instanceof MediaRecorder)) {
                     return;
                 }
-                if (output.equals(config.videoPath)) {
+                MediaRecorder recorder = (MediaRecorder) param.thisObject;
+                Session session = SESSIONS.remove(recorder);
+                if (param.hasThrowable()) {
+                    VideoStager.discard(recorder);
                     return;
                 }
-                try {
-                    FileOps.replaceFile(new File(config.videoPath), new File(output));
-                } catch (Exception e) {
-                    Logger.log("覆盖视频失败:", e);
-                }
+                commit(recorder, session);
             }
         });
+
+        XC_MethodHook discard = new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) {
+                if (param.thisObject instanceof MediaRecorder) {
+                    SESSIONS.remove(param.thisObject);
+                    VideoStager.discard(param.thisObject);
+                }
+            }
+        };
+        XposedBridge.hookAllMethods(MediaRecorder.class, "reset", discard);
+        XposedBridge.hookAllMethods(MediaRecorder.class, "release", discard);
+    }
+
+    /**
+     * setNextOutputFile 切换生效时上一个文件已写完：先提交它，再为新文件开始暂存。
+     */
+    private static void rotate(MediaRecorder recorder) {
+        Session session = SESSIONS.get(recorder);
+        if (session == null || session.nextOutput == null) {
+            return;
+        }
+        commit(recorder, session);
+        session.output = session.nextOutput;
+        session.nextOutput = null;
+        Config config = ConfigLoader.get();
+        String output = targetOutput(session, config);
+        if (output != null) {
+            VideoStager.stage(recorder, new File(config.videoPath), new File(output), config.videoHardLink);
+        }
     }
 
-    private static String tryResolvePathFromFd(FileDescriptor fd) {
+    private static void commit(MediaRecorder recorder, Session session) {
+        Config config = ConfigLoader.get();
+        String output = targetOutput(session, config);
+        if (output == null) {
+            VideoStager.discard(recorder);
+            return;
+        }
         try {
-            Field field = FileDescriptor.class.getDeclaredField("descriptor");
-            field.setAccessible(true);
-            int rawFd = field.getInt(fd);
-            if (rawFd < 0) {
-                return null;
+            FileOps.ReplaceResult result = VideoStager.commit(
+                    recorder, new File(config.videoPath), new File(output), config.videoHardLink,
+                    config.videoAsyncCommit);
+            if (result != null) {
+                Logger.log("覆盖视频完成: " + output + " (" + result + ")");
             }
-            if (Build.VERSION.SDK_INT >= 21) {
-                return android.system.Os.readlink("/proc/self/fd/" + rawFd);
+        } catch (Exception e) {
+            Logger.log("覆盖视频失败:", e);
+        }
+    }
+
+    private static Session sessionOf(MediaRecorder recorder) {
+        synchronized (SESSIONS) {
+            Session session = SESSIONS.get(recorder);
+            if (session == null) {
+                session = new Session();
+                SESSIONS.put(recorder, session);
             }
+            return session;
+        }
+    }
+
+    private static String targetOutput(Session session, Config config) {
+        if (session == null || !config.enabled || !config.enableVideo) {
+            return null;
+        }
+        String output = session.output;
+        if (output == null || output.trim().isEmpty()) {
+            return null;
+        }
+        if (output.equals(config.videoPath)) {
             return null;
+        }
+        return output;
+    }
+
+    private static String resolveOutput(Object target) {
+        if (target instanceof String) {
+            return (String) target;
+        }
+        if (target instanceof File) {
+            return ((File) target).getAbsolutePath();
+        }
+        if (target instanceof FileDescriptor) {
+            return tryResolvePathFromFd((FileDescriptor) target);
+        }
+        return null;
+    }
+
+    static String tryResolvePathFromFd(FileDescriptor fd) {
+        if (DESCRIPTOR_FIELD == null || Build.VERSION.SDK_INT < 21) {
+            return null;
+        }
+        try {
+            int rawFd = DESCRIPTOR_FIELD.getInt(fd);
+            if (rawFd < 0) {
+                return null;
+            }
+            return android.system.Os.readlink("/proc/self/fd/" + rawFd);
         } catch (Throwable ignored) {
             return null;
         }
     }
+
+    private static Field findDescriptorField() {
+        try {
+            Field field = FileDescriptor.class.getDeclaredField("descriptor");
+            field.setAccessible(true);
+            return field;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次录制会话的输出：路径在 setOutputFile 时解析一次（fd 只 readlink 一次），start/stop 直接复用。
+     */
+    private static final class Session {
+        volatile String output;
+        volatile String nextOutput;
+    }
 }
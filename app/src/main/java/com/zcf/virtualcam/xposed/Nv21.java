@@ -0,0 +1,36 @@
+package com.zcf.virtualcam.xposed;
+
+import androidx.annotation.NonNull;
+
+final class Nv21 {
+
+    private Nv21() {
+    }
+
+    static int frameSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    static void fromArgb(@NonNull int[] argb, int width, int height, @NonNull byte[] out) {
+        int uvIndex = width * height;
+        int yIndex = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int c = argb[row + x];
+                int r = (c >> 16) & 0xff;
+                int g = (c >> 8) & 0xff;
+                int b = c & 0xff;
+                out[yIndex++] = (byte) clamp(((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+                if ((y & 1) == 0 && (x & 1) == 0) {
+                    out[uvIndex++] = (byte) clamp(((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+                    out[uvIndex++] = (byte) clamp(((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                }
+            }
+        }
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
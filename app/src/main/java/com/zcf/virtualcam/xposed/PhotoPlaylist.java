@@ -0,0 +1,347 @@
+package com.zcf.virtualcam.xposed;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * photoPath 为目录或清单文件时的照片播放列表；后台线程提前读好并按相机参数生成接下来 K 张，拍照时直接取走。
+ */
+final class PhotoPlaylist {
+
+    private static final long RESCAN_INTERVAL_MS = 5000L;
+    private static final int MAX_PREFETCH = 32;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-playlist");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Object LOCK = new Object();
+    private static volatile PhotoPlaylist current;
+    private static volatile String notPlaylistPath;
+    private static volatile long notPlaylistVersion;
+
+    @NonNull
+    final String source;
+    @NonNull
+    final String order;
+    final long seed;
+    final long configVersion;
+    private final long sourceModified;
+    @NonNull
+    private final String[] items;
+    @NonNull
+    private final Slot[] ring;
+
+    private long nextPosition;
+    private volatile long checkedAtMs;
+    @Nullable
+    private volatile Spec spec;
+    @Nullable
+    private volatile Shuffle shuffle;
+
+    private PhotoPlaylist(@NonNull Config config, long sourceModified, @NonNull String[] items) {
+        this.source = config.photoPath;
+        this.order = config.playlistOrder;
+        this.seed = config.playlistSeed;
+        this.configVersion = config.version;
+        this.sourceModified = sourceModified;
+        this.items = items;
+        this.ring = new Slot[Math.max(1, Math.min(MAX_PREFETCH, config.prefetchCount))];
+        this.checkedAtMs = SystemClock.uptimeMillis();
+    }
+
+    @Nullable
+    static PhotoPlaylist of(@NonNull Config config) {
+        PhotoPlaylist playlist = current;
+        if (playlist != null && playlist.matches(config)) {
+            playlist.rescanIfStale();
+            return playlist;
+        }
+        if (notPlaylistVersion == config.version && config.photoPath.equals(notPlaylistPath)) {
+            return null;
+        }
+        synchronized (LOCK) {
+            playlist = current;
+            if (playlist != null && playlist.matches(config)) {
+                return playlist;
+            }
+            playlist = load(config);
+            if (playlist == null) {
+                notPlaylistPath = config.photoPath;
+                notPlaylistVersion = config.version;
+                return null;
+            }
+            notPlaylistPath = null;
+            current = playlist;
+            Logger.log("照片播放列表: " + playlist.source + ", " + playlist.items.length + " 张, 顺序=" + playlist.order
+                    + ", 预取=" + playlist.ring.length);
+            playlist.fillAhead();
+            return playlist;
+        }
+    }
+
+    static boolean isPlaylistPath(@NonNull String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".txt") || lower.endsWith(".m3u") || lower.endsWith(".lst") || new File(path).isDirectory();
+    }
+
+    @Nullable
+    private static PhotoPlaylist load(@NonNull Config config) {
+        if (!isPlaylistPath(config.photoPath)) {
+            return null;
+        }
+        File source = new File(config.photoPath);
+        List<String> items = new ArrayList<>();
+        if (source.isDirectory()) {
+            String[] names = source.list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    String lower = name.toLowerCase(Locale.ROOT);
+                    if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+                        items.add(new File(source, name).getAbsolutePath());
+                    }
+                }
+            }
+        } else {
+            try {
+                byte[] manifest = FileOps.readAllBytes(source, FileOps.MAX_PHOTO_BYTES);
+                File dir = source.getAbsoluteFile().getParentFile();
+                for (String line : new String(manifest, StandardCharsets.UTF_8).split("\n")) {
+                    String item = line.trim();
+                    if (item.isEmpty() || item.startsWith("#")) {
+                        continue;
+                    }
+                    File f = new File(item);
+                    items.add(f.isAbsolute() || dir == null ? item : new File(dir, item).getAbsolutePath());
+                }
+            } catch (IOException e) {
+                Logger.log("读取照片清单失败:", e);
+            }
+        }
+        if (items.isEmpty()) {
+            return null;
+        }
+        return new PhotoPlaylist(config, source.lastModified(), items.toArray(new String[0]));
+    }
+
+    private boolean matches(@NonNull Config config) {
+        int prefetch = Math.max(1, Math.min(MAX_PREFETCH, config.prefetchCount));
+        return configVersion == config.version && seed == config.playlistSeed && ring.length == prefetch
+                && source.equals(config.photoPath) && order.equals(config.playlistOrder);
+    }
+
+    private void rescanIfStale() {
+        long now = SystemClock.uptimeMillis();
+        if (now - checkedAtMs < RESCAN_INTERVAL_MS) {
+            return;
+        }
+        checkedAtMs = now;
+        if (new File(source).lastModified() != sourceModified) {
+            synchronized (LOCK) {
+                if (current == this) {
+                    current = null;
+                }
+            }
+        }
+    }
+
+    int size() {
+        return items.length;
+    }
+
+    void setSpec(int width, int height, int rotation, int quality) {
+        setSpec(new Spec(width, height, rotation, quality));
+    }
+
+    private void setSpec(@NonNull Spec wanted) {
+        if (!wanted.equals(spec)) {
+            spec = wanted;
+            fillAhead();
+        }
+    }
+
+    @Nullable
+    byte[] take(int width, int height, int rotation, int quality) {
+        Spec wanted = new Spec(width, height, rotation, quality);
+        setSpec(wanted);
+        long position;
+        Slot slot;
+        synchronized (this) {
+            position = nextPosition++;
+            int index = (int) (position % ring.length);
+            slot = ring[index];
+            ring[index] = null;
+        }
+        EXECUTOR.execute(() -> fill(position + ring.length));
+        if (slot != null && slot.position == position && wanted.equals(slot.spec)) {
+            return slot.jpeg;
+        }
+        Slot loaded = load(position, wanted);
+        return loaded != null ? loaded.jpeg : null;
+    }
+
+    private void fillAhead() {
+        long start;
+        synchronized (this) {
+            start = nextPosition;
+        }
+        for (int i = 0; i < ring.length; i++) {
+            long position = start + i;
+            EXECUTOR.execute(() -> fill(position));
+        }
+    }
+
+    private void fill(long position) {
+        Spec wanted = spec != null ? spec : Spec.ORIGINAL;
+        int index = (int) (position % ring.length);
+        synchronized (this) {
+            Slot existing = ring[index];
+            if (position < nextPosition || (existing != null && existing.position == position
+                    && existing.spec.equals(wanted))) {
+                return;
+            }
+        }
+        Slot slot = load(position, wanted);
+        if (slot == null) {
+            return;
+        }
+        synchronized (this) {
+            if (position >= nextPosition) {
+                ring[index] = slot;
+            }
+        }
+    }
+
+    @Nullable
+    private Slot load(long position, @NonNull Spec wanted) {
+        String path = items[indexAt(position)];
+        try {
+            byte[] jpeg = FileOps.readAllBytes(new File(path), FileOps.MAX_PHOTO_BYTES);
+            if (jpeg == null || jpeg.length == 0) {
+                return null;
+            }
+            byte[] rendered = JpegVariants.render(jpeg, wanted.width, wanted.height, wanted.rotation, wanted.quality);
+            return new Slot(position, wanted, rendered != null ? rendered : jpeg);
+        } catch (IOException e) {
+            Logger.log("读取播放列表照片失败: " + path + ",", e);
+            return null;
+        }
+    }
+
+    private int indexAt(long position) {
+        int n = items.length;
+        if (Config.PLAYLIST_SEQUENTIAL.equals(order)) {
+            return (int) Math.min(position, n - 1);
+        }
+        if (Config.PLAYLIST_RANDOM.equals(order)) {
+            long cycle = position / n;
+            Shuffle local = shuffle;
+            if (local == null || local.cycle != cycle) {
+                local = new Shuffle(cycle, permutation(n, seed, cycle));
+                shuffle = local;
+            }
+            return local.order[(int) (position % n)];
+        }
+        return (int) (position % n);
+    }
+
+    /**
+     * 每一轮用（seed, 轮次）播种的 Fisher-Yates 洗牌，一轮内每张恰好出现一次，同一 seed 下顺序可复现。
+     */
+    @NonNull
+    private static int[] permutation(int n, long seed, long cycle) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        long state = mix(seed + cycle * 0x9E3779B97F4A7C15L);
+        for (int i = n - 1; i > 0; i--) {
+            state += 0x9E3779B97F4A7C15L;
+            int j = (int) ((mix(state) >>> 1) % (i + 1));
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Shuffle {
+        final long cycle;
+        @NonNull
+        final int[] order;
+
+        Shuffle(long cycle, @NonNull int[] order) {
+            this.cycle = cycle;
+            this.order = order;
+        }
+    }
+
+    private static final class Spec {
+        static final Spec ORIGINAL = new Spec(0, 0, 0, 0);
+
+        final int width;
+        final int height;
+        final int rotation;
+        final int quality;
+
+        Spec(int width, int height, int rotation, int quality) {
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.quality = quality;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Spec)) {
+                return false;
+            }
+            Spec other = (Spec) o;
+            return width == other.width && height == other.height && rotation == other.rotation
+                    && quality == other.quality;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((width * 31 + height) * 31 + rotation) * 31 + quality;
+        }
+    }
+
+    private static final class Slot {
+        final long position;
+        @NonNull
+        final Spec spec;
+        @NonNull
+        final byte[] jpeg;
+
+        Slot(long position, @NonNull Spec spec, @NonNull byte[] jpeg) {
+            this.position = position;
+            this.spec = spec;
+            this.jpeg = jpeg;
+        }
+    }
+}
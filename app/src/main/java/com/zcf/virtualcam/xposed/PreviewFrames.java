@@ -0,0 +1,159 @@
+package com.zcf.virtualcam.xposed;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 预览注入用的 NV21 帧：素材在后台线程按预览尺寸转换一次，预览回调里只做一次 arraycopy。
+ */
+final class PreviewFrames {
+
+    private static final long REFRESH_INTERVAL_MS = 500L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-preview");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final AtomicBoolean PENDING = new AtomicBoolean(false);
+    private static final Runnable REFRESH = PreviewFrames::refresh;
+
+    private static volatile Frame current;
+    private static volatile Request wanted;
+    private static volatile long lastRequestMs;
+
+    private PreviewFrames() {
+    }
+
+    static void request(@NonNull String path, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        schedule(path, width, height, SystemClock.uptimeMillis());
+    }
+
+    @Nullable
+    static byte[] frame(@NonNull String path, int width, int height) {
+        Frame frame = current;
+        boolean matches = frame != null && frame.matches(path, width, height);
+        long now = SystemClock.uptimeMillis();
+        if (!matches || now - lastRequestMs >= REFRESH_INTERVAL_MS) {
+            schedule(path, width, height, now);
+        }
+        return matches ? frame.nv21 : null;
+    }
+
+    private static void schedule(@NonNull String path, int width, int height, long now) {
+        Request request = wanted;
+        if (request == null || !request.matches(path, width, height)) {
+            wanted = new Request(path, width, height);
+        }
+        lastRequestMs = now;
+        if (PENDING.compareAndSet(false, true)) {
+            EXECUTOR.execute(REFRESH);
+        }
+    }
+
+    private static void refresh() {
+        PENDING.set(false);
+        Request request = wanted;
+        if (request == null) {
+            return;
+        }
+        FileOps.CachedBytes entry = FileOps.readCachedEntry(request.path, FileOps.MAX_PHOTO_BYTES);
+        if (entry == null) {
+            return;
+        }
+        Frame frame = current;
+        if (frame != null && frame.matches(request.path, request.width, request.height)
+                && frame.version.equals(entry.version)) {
+            return;
+        }
+        try {
+            byte[] nv21 = convert(entry.bytes, request.width, request.height);
+            if (nv21 != null) {
+                current = new Frame(entry.version, request.width, request.height, nv21);
+            }
+        } catch (Throwable t) {
+            Logger.log("预览帧转换失败:", t);
+        }
+    }
+
+    @Nullable
+    private static byte[] convert(@NonNull byte[] jpeg, int width, int height) {
+        Bitmap decoded = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+        if (decoded == null) {
+            return null;
+        }
+        int srcW = decoded.getWidth();
+        int srcH = decoded.getHeight();
+        int cropW = srcW;
+        int cropH = srcH;
+        if ((long) srcW * height > (long) srcH * width) {
+            cropW = (int) ((long) srcH * width / height);
+        } else {
+            cropH = (int) ((long) srcW * height / width);
+        }
+        Bitmap cropped = Bitmap.createBitmap(decoded, (srcW - cropW) / 2, (srcH - cropH) / 2, cropW, cropH);
+        Bitmap scaled = Bitmap.createScaledBitmap(cropped, width, height, true);
+        int[] argb = new int[width * height];
+        scaled.getPixels(argb, 0, width, 0, 0, width, height);
+        if (scaled != cropped) {
+            scaled.recycle();
+        }
+        if (cropped != decoded) {
+            cropped.recycle();
+        }
+        decoded.recycle();
+
+        byte[] nv21 = new byte[Nv21.frameSize(width, height)];
+        Nv21.fromArgb(argb, width, height, nv21);
+        return nv21;
+    }
+
+    private static final class Request {
+        @NonNull
+        final String path;
+        final int width;
+        final int height;
+
+        Request(@NonNull String path, int width, int height) {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+
+        boolean matches(@NonNull String path, int width, int height) {
+            return this.width == width && this.height == height && this.path.equals(path);
+        }
+    }
+
+    private static final class Frame {
+        @NonNull
+        final FileOps.AssetVersion version;
+        final int width;
+        final int height;
+        @NonNull
+        final byte[] nv21;
+
+        Frame(@NonNull FileOps.AssetVersion version, int width, int height, @NonNull byte[] nv21) {
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.nv21 = nv21;
+        }
+
+        boolean matches(@NonNull String path, int width, int height) {
+            return this.width == width && this.height == height && version.path.equals(path);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.zcf.virtualcam.xposed;
+
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 把 GPX 或 CSV 轨迹流式编译为 {@link TrackSource} 使用的 .vctrk：逐点读取、逐点写出，只缓存一个点，
+ * 因此数百万点的轨迹也不会读进堆。缺失的速度与方向按相邻两点推算。
+ */
+final class TrackImporter {
+
+    private static final double EARTH_RADIUS_M = 6371008.8d;
+    private static final long DEFAULT_STEP_MS = 1000L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-track-import");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TrackImporter() {
+    }
+
+    @NonNull
+    static File compiledFileFor(@NonNull File source) {
+        String path = source.getAbsolutePath();
+        if (path.toLowerCase(Locale.ROOT).endsWith(TrackSource.COMPILED_SUFFIX)) {
+            return source;
+        }
+        return new File(path + TrackSource.COMPILED_SUFFIX);
+    }
+
+    /**
+     * 目标 App 无权写入素材目录时，在进程自己的临时目录里编译的副本。
+     */
+    @NonNull
+    static File fallbackCompiledFileFor(@NonNull File source) {
+        return new File(System.getProperty("java.io.tmpdir", "/data/local/tmp"),
+                "virtualcam-" + Integer.toHexString(source.getAbsolutePath().hashCode()) + TrackSource.COMPILED_SUFFIX);
+    }
+
+    /**
+     * 不比源文件旧的已编译轨迹：先找源文件旁边的 .vctrk，再找临时目录里的回退副本；都没有时返回 null。
+     */
+    @Nullable
+    static File findCompiled(@NonNull File source) {
+        File sibling = compiledFileFor(source);
+        if (sibling.equals(source)) {
+            return source.isFile() ? source : null;
+        }
+        long modified = source.lastModified();
+        if (sibling.isFile() && sibling.lastModified() >= modified) {
+            return sibling;
+        }
+        File fallback = fallbackCompiledFileFor(source);
+        if (fallback.isFile() && fallback.lastModified() >= modified) {
+            return fallback;
+        }
+        return null;
+    }
+
+    /**
+     * 模块 App 保存配置时调用：GPX/CSV 轨迹比旁边的 .vctrk 新时在后台就地编译，目标进程直接映射即可，不必各自编译。
+     * 保存在主线程上进行，几小时的轨迹编译要数秒，这里立即返回；编译完成前目标进程按 {@link TrackSource#current} 的逻辑处理。
+     */
+    static void prepare(@NonNull String path) {
+        if (path.isEmpty()) {
+            return;
+        }
+        EXECUTOR.execute(() -> prepareNow(path));
+    }
+
+    private static void prepareNow(@NonNull String path) {
+        File source = new File(path);
+        File compiled = compiledFileFor(source);
+        if (compiled.equals(source) || !source.isFile()
+                || (compiled.isFile() && compiled.lastModified() >= source.lastModified())) {
+            return;
+        }
+        try {
+            compile(source, compiled);
+        } catch (IOException e) {
+            Logger.log("编译轨迹失败: " + path + ",", e);
+        }
+    }
+
+    /**
+     * 编译到 out；先写临时文件再重命名，读取方不会映射到写了一半的轨迹。返回点数。
+     */
+    static int compile(@NonNull File source, @NonNull File out) throws IOException {
+        File tmp = new File(out.getAbsolutePath() + ".tmp");
+        Writer writer = new Writer(tmp);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(source);
+            if (source.getName().toLowerCase(Locale.ROOT).endsWith(".gpx")) {
+                readGpx(in, writer);
+            } else {
+                readCsv(in, writer);
+            }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        if (writer.count == 0) {
+            if (!tmp.delete()) {
+                Logger.log("临时文件删除失败: " + tmp.getAbsolutePath());
+            }
+            throw new IOException("轨迹中没有可用的点: " + source.getAbsolutePath());
+        }
+        FileOps.commit(tmp, out);
+        Logger.log("轨迹已编译: " + out.getAbsolutePath() + ", " + writer.count + " 点");
+        return writer.count;
+    }
+
+    private static void readGpx(@NonNull InputStream in, @NonNull Writer writer) throws IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in, null);
+            boolean inPoint = false;
+            double lat = 0d;
+            double lng = 0d;
+            double alt = Double.NaN;
+            double speed = Double.NaN;
+            double bearing = Double.NaN;
+            long time = Long.MIN_VALUE;
+            String field = null;
+            for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                if (event == XmlPullParser.START_TAG) {
+                    String name = parser.getName();
+                    if ("trkpt".equals(name) || "rtept".equals(name) || "wpt".equals(name)) {
+                        inPoint = true;
+                        lat = parseDouble(parser.getAttributeValue(null, "lat"));
+                        lng = parseDouble(parser.getAttributeValue(null, "lon"));
+                        alt = Double.NaN;
+                        speed = Double.NaN;
+                        bearing = Double.NaN;
+                        time = Long.MIN_VALUE;
+                    } else if (inPoint) {
+                        field = name;
+                    }
+                } else if (event == XmlPullParser.TEXT && inPoint && field != null) {
+                    String text = parser.getText().trim();
+                    if ("ele".equals(field)) {
+                        alt = parseDouble(text);
+                    } else if ("time".equals(field)) {
+                        time = parseTime(text);
+                    } else if ("speed".equals(field)) {
+                        speed = parseDouble(text);
+                    } else if ("course".equals(field)) {
+                        bearing = parseDouble(text);
+                    }
+                } else if (event == XmlPullParser.END_TAG) {
+                    String name = parser.getName();
+                    if ("trkpt".equals(name) || "rtept".equals(name) || "wpt".equals(name)) {
+                        inPoint = false;
+                        writer.add(time, lat, lng, alt, speed, bearing);
+                    }
+                    field = null;
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException("GPX 解析失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 每行 time,lat,lng[,alt[,speed[,bearing]]]；首行为表头时按列名（time/lat/lng/alt/speed/bearing 及常见别名）取列。
+     */
+    private static void readCsv(@NonNull InputStream in, @NonNull Writer writer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        int[] columns = {0, 1, 2, 3, 4, 5};
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] cells = line.split("[,;\t]");
+            if (first) {
+                first = false;
+                if (isHeader(cells)) {
+                    columns = headerColumns(cells);
+                    continue;
+                }
+            }
+            writer.add(parseTime(cell(cells, columns[0])),
+                    parseDouble(cell(cells, columns[1])),
+                    parseDouble(cell(cells, columns[2])),
+                    parseDouble(cell(cells, columns[3])),
+                    parseDouble(cell(cells, columns[4])),
+                    parseDouble(cell(cells, columns[5])));
+        }
+    }
+
+    private static boolean isHeader(@NonNull String[] cells) {
+        return cells.length > 1 && Double.isNaN(parseDouble(cells[1].trim()));
+    }
+
+    @NonNull
+    private static int[] headerColumns(@NonNull String[] cells) {
+        int[] columns = {-1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < cells.length; i++) {
+            String name = cells[i].trim().toLowerCase(Locale.ROOT);
+            if (name.equals("time") || name.equals("timestamp") || name.equals("t")) {
+                columns[0] = i;
+            } else if (name.equals("lat") || name.equals("latitude")) {
+                columns[1] = i;
+            } else if (name.equals("lng") || name.equals("lon") || name.equals("longitude")) {
+                columns[2] = i;
+            } else if (name.equals("alt") || name.equals("altitude") || name.equals("ele")) {
+                columns[3] = i;
+            } else if (name.equals("speed")) {
+                columns[4] = i;
+            } else if (name.equals("bearing") || name.equals("course") || name.equals("heading")) {
+                columns[5] = i;
+            }
+        }
+        return columns;
+    }
+
+    @Nullable
+    private static String cell(@NonNull String[] cells, int index) {
+        return index >= 0 && index < cells.length ? cells[index].trim() : null;
+    }
+
+    private static double parseDouble(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 数字：含小数点或小于 1e11 视为秒，否则为毫秒；否则按 ISO 8601（yyyy-MM-ddTHH:mm:ss[.SSS][Z|±HH:mm]）解析。
+     */
+    static long parseTime(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        char c = value.charAt(0);
+        if (value.length() < 10 || value.charAt(4) != '-') {
+            if ((c >= '0' && c <= '9') || c == '-' || c == '.') {
+                double number = parseDouble(value);
+                if (Double.isNaN(number)) {
+                    return Long.MIN_VALUE;
+                }
+                return value.indexOf('.') >= 0 || Math.abs(number) < 1e11 ? Math.round(number * 1000d) : (long) number;
+            }
+            return Long.MIN_VALUE;
+        }
+        try {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+            calendar.clear();
+            calendar.set(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(5, 7)) - 1,
+                    Integer.parseInt(value.substring(8, 10)));
+            int pos = 10;
+            int millis = 0;
+            if (value.length() >= 19 && (value.charAt(10) == 'T' || value.charAt(10) == ' ')) {
+                calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(value.substring(11, 13)));
+                calendar.set(Calendar.MINUTE, Integer.parseInt(value.substring(14, 16)));
+                calendar.set(Calendar.SECOND, Integer.parseInt(value.substring(17, 19)));
+                pos = 19;
+                if (pos < value.length() && value.charAt(pos) == '.') {
+                    int start = ++pos;
+                    while (pos < value.length() && Character.isDigit(value.charAt(pos))) {
+                        pos++;
+                    }
+                    String fraction = (value.substring(start, pos) + "000").substring(0, 3);
+                    millis = Integer.parseInt(fraction);
+                }
+            }
+            long ms = calendar.getTimeInMillis() + millis;
+            if (pos < value.length()) {
+                char sign = value.charAt(pos);
+                if ((sign == '+' || sign == '-') && value.length() >= pos + 6) {
+                    int offset = Integer.parseInt(value.substring(pos + 1, pos + 3)) * 60
+                            + Integer.parseInt(value.substring(pos + 4, pos + 6));
+                    ms -= (sign == '+' ? 1 : -1) * offset * 60_000L;
+                }
+            }
+            return ms;
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dp = p2 - p1;
+        double dl = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dp / 2) * Math.sin(dp / 2) + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 2 * EARTH_RADIUS_M * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    static double bearingDegrees(double lat1, double lng1, double lat2, double lng2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dl = Math.toRadians(lng2 - lng1);
+        double y = Math.sin(dl) * Math.cos(p2);
+        double x = Math.cos(p1) * Math.sin(p2) - Math.sin(p1) * Math.cos(p2) * Math.cos(dl);
+        double deg = Math.toDegrees(Math.atan2(y, x));
+        return deg < 0d ? deg + 360d : deg;
+    }
+
+    /**
+     * 延迟一个点写出：拿到下一个点后才能算出当前点的离开速度与方向；最后一个点沿用前一段。
+     */
+    private static final class Writer {
+        @NonNull
+        private final File file;
+        @NonNull
+        private final DataOutputStream out;
+        int count;
+        private boolean pending;
+        private long startMs;
+        private long lastWrittenT;
+        private long pT;
+        private double pLat;
+        private double pLng;
+        private double pAlt;
+        private double pSpeed;
+        private double pBearing;
+        private float lastSpeed;
+        private float lastBearing;
+
+        Writer(@NonNull File file) throws IOException {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("无法创建目录: " + parent.getAbsolutePath());
+            }
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false), 64 * 1024));
+            out.write(new byte[TrackSource.HEADER_SIZE]);
+        }
+
+        void add(long timeMs, double lat, double lng, double alt, double speed, double bearing) throws IOException {
+            if (Double.isNaN(lat) || Double.isNaN(lng) || lat < -90d || lat > 90d || lng < -180d || lng > 180d) {
+                return;
+            }
+            if (timeMs == Long.MIN_VALUE) {
+                timeMs = pending ? pT + DEFAULT_STEP_MS : 0L;
+            }
+            if (pending && timeMs < pT) {
+                return;
+            }
+            if (pending) {
+                double dt = (timeMs - pT) / 1000d;
+                double dist = distanceMeters(pLat, pLng, lat, lng);
+                float s = (float) (!Double.isNaN(pSpeed) ? pSpeed : (dt > 0d ? dist / dt : lastSpeed));
+                float b = (float) (!Double.isNaN(pBearing) ? pBearing
+                        : (dist > 0d ? bearingDegrees(pLat, pLng, lat, lng) : lastBearing));
+                emit(s, b);
+            }
+            pending = true;
+            pT = timeMs;
+            pLat = lat;
+            pLng = lng;
+            pAlt = alt;
+            pSpeed = speed;
+            pBearing = bearing;
+        }
+
+        private void emit(float speed, float bearing) throws IOException {
+            if (count == 0) {
+                startMs = pT;
+            }
+            lastWrittenT = pT - startMs;
+            out.writeLong(lastWrittenT);
+            out.writeDouble(pLat);
+            out.writeDouble(pLng);
+            out.writeDouble(Double.isNaN(pAlt) ? 0d : pAlt);
+            out.writeFloat(speed);
+            out.writeFloat(bearing);
+            lastSpeed = speed;
+            lastBearing = bearing;
+            count++;
+        }
+
+        void finish() throws IOException {
+            if (pending) {
+                emit((float) (Double.isNaN(pSpeed) ? lastSpeed : pSpeed),
+                        (float) (Double.isNaN(pBearing) ? lastBearing : pBearing));
+                pending = false;
+            }
+            out.flush();
+            out.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(TrackSource.OFF_MAGIC);
+                raf.writeInt(TrackSource.MAGIC);
+                raf.writeInt(TrackSource.FORMAT);
+                raf.writeInt(count);
+                raf.writeInt(TrackSource.RECORD_SIZE);
+                raf.writeLong(count > 0 ? lastWrittenT : 0L);
+                raf.getFD().sync();
+            } finally {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            if (file.exists() && !file.delete()) {
+                Logger.log("临时文件删除失败: " + file.getAbsolutePath());
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.zcf.virtualcam.xposed;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 预处理后的二进制轨迹（.vctrk），只读 mmap；按经过的时间二分查找相邻两点再线性插值，轨迹点从不进堆。
+ * <p>
+ * 布局：magic | format | count | recordSize | durationMs | 保留 | count × (tMs, lat, lng, alt, speed, bearing)。
+ * tMs 为相对第一个点的毫秒数且单调不减；每个点的 speed/bearing 描述离开该点的那一段，缺失时由
+ * {@link TrackImporter} 按相邻点推算，因此段内只插值位置，速度与方向取段起点的值。
+ */
+final class TrackSource {
+
+    static final String COMPILED_SUFFIX = ".vctrk";
+
+    static final int MAGIC = 0x5643544B;
+    static final int FORMAT = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 40;
+
+    static final int OFF_MAGIC = 0;
+    static final int OFF_FORMAT = 4;
+    static final int OFF_COUNT = 8;
+    static final int OFF_RECORD_SIZE = 12;
+    static final int OFF_DURATION = 16;
+
+    static final int R_TIME = 0;
+    static final int R_LATITUDE = 8;
+    static final int R_LONGITUDE = 16;
+    static final int R_ALTITUDE = 24;
+    static final int R_SPEED = 32;
+    static final int R_BEARING = 36;
+
+    private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+    private static final long RETRY_INTERVAL_MS = 2000L;
+    private static final long RESCAN_INTERVAL_MS = 5000L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-track");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Object LOCK = new Object();
+    private static volatile TrackSource current;
+    private static String pendingPath;
+    private static long pendingAtMs;
+
+    @NonNull
+    final String path;
+    final long sourceModified;
+    final int count;
+    final long durationMs;
+    @NonNull
+    private final ByteBuffer buffer;
+    private volatile long checkedAtMs;
+
+    private TrackSource(@NonNull String path, long sourceModified, @NonNull ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_FORMAT) != FORMAT
+                || buffer.getInt(OFF_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException("不是有效的轨迹文件: " + path);
+        }
+        int n = buffer.getInt(OFF_COUNT);
+        if (n <= 0 || HEADER_SIZE + (long) n * RECORD_SIZE > buffer.capacity()) {
+            throw new IOException("轨迹文件损坏: count=" + n);
+        }
+        this.path = path;
+        this.sourceModified = sourceModified;
+        this.count = n;
+        this.durationMs = buffer.getLong(OFF_DURATION);
+        this.buffer = buffer;
+        this.checkedAtMs = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * 当前配置的轨迹；GPX/CSV 尚未编译时在后台编译，期间返回 null（调用方沿用固定坐标）。
+     */
+    @Nullable
+    static TrackSource current(@NonNull String path) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        TrackSource source = current;
+        if (source != null && source.path.equals(path) && !source.isStale()) {
+            return source;
+        }
+        synchronized (LOCK) {
+            source = current;
+            if (source != null && source.path.equals(path) && source.sourceModified == new File(path).lastModified()) {
+                return source;
+            }
+            File file = new File(path);
+            File compiled = TrackImporter.findCompiled(file);
+            if (compiled != null) {
+                source = open(path, compiled, file.lastModified());
+                if (source != null) {
+                    current = source;
+                    return source;
+                }
+            }
+            long now = SystemClock.uptimeMillis();
+            if (path.equals(pendingPath) && now - pendingAtMs < RETRY_INTERVAL_MS) {
+                return null;
+            }
+            pendingPath = path;
+            pendingAtMs = now;
+            if (!TrackImporter.compiledFileFor(file).equals(file) && file.isFile()) {
+                EXECUTOR.execute(() -> compileInBackground(path));
+            }
+            return null;
+        }
+    }
+
+    private static void compileInBackground(@NonNull String path) {
+        File file = new File(path);
+        File target = TrackImporter.findCompiled(file);
+        if (target != null) {
+            // 排队期间已由模块设置页或同一 App 的其他进程编译好
+            publish(path, target, file.lastModified());
+            return;
+        }
+        target = TrackImporter.compiledFileFor(file);
+        try {
+            TrackImporter.compile(file, target);
+        } catch (IOException e) {
+            // 目标 App 通常无权写入素材目录，退回到进程自己的临时目录
+            try {
+                target = TrackImporter.fallbackCompiledFileFor(file);
+                TrackImporter.compile(file, target);
+            } catch (IOException e2) {
+                Logger.log("编译轨迹失败: " + path + ",", e2);
+                return;
+            }
+        }
+        publish(path, target, file.lastModified());
+    }
+
+    private static void publish(@NonNull String path, @NonNull File compiled, long sourceModified) {
+        TrackSource source = open(path, compiled, sourceModified);
+        if (source != null) {
+            synchronized (LOCK) {
+                current = source;
+                pendingPath = null;
+            }
+        }
+    }
+
+    private boolean isStale() {
+        long now = SystemClock.uptimeMillis();
+        if (now - checkedAtMs < RESCAN_INTERVAL_MS) {
+            return false;
+        }
+        checkedAtMs = now;
+        return new File(path).lastModified() != sourceModified;
+    }
+
+    @Nullable
+    static TrackSource open(@NonNull String path, @NonNull File compiled, long sourceModified) {
+        try {
+            TrackSource source = new TrackSource(path, sourceModified, FileOps.mapReadOnly(compiled, MAX_FILE_BYTES));
+            Logger.log("已映射轨迹: " + compiled.getAbsolutePath() + ", " + source.count + " 点, 时长 "
+                    + (source.durationMs / 1000L) + " s");
+            return source;
+        } catch (IOException e) {
+            Logger.log("打开轨迹失败: " + compiled.getAbsolutePath() + ",", e);
+            return null;
+        }
+    }
+
+    /**
+     * 取经过 elapsedMs 时的插值位置；loop 为 false 时到终点后停在最后一个点。
+     */
+    @NonNull
+    LocationState.Fix sample(long elapsedMs, boolean loop, long atMs) {
+        long t = elapsedMs;
+        if (t < 0L) {
+            t = 0L;
+        } else if (t > durationMs) {
+            t = loop && durationMs > 0L ? t % durationMs : durationMs;
+        }
+        int i = indexAtOrBefore(t);
+        int base = HEADER_SIZE + i * RECORD_SIZE;
+        if (i + 1 >= count) {
+            return fixAt(base, atMs);
+        }
+        int next = base + RECORD_SIZE;
+        long t0 = buffer.getLong(base + R_TIME);
+        long t1 = buffer.getLong(next + R_TIME);
+        if (t1 <= t0) {
+            return fixAt(base, atMs);
+        }
+        double f = (double) (t - t0) / (double) (t1 - t0);
+        return new LocationState.Fix(
+                lerp(buffer.getDouble(base + R_LATITUDE), buffer.getDouble(next + R_LATITUDE), f),
+                lerpLongitude(buffer.getDouble(base + R_LONGITUDE), buffer.getDouble(next + R_LONGITUDE), f),
+                lerp(buffer.getDouble(base + R_ALTITUDE), buffer.getDouble(next + R_ALTITUDE), f),
+                buffer.getFloat(base + R_SPEED),
+                buffer.getFloat(base + R_BEARING),
+                atMs);
+    }
+
+    private int indexAtOrBefore(long t) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (buffer.getLong(HEADER_SIZE + mid * RECORD_SIZE + R_TIME) <= t) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    @NonNull
+    private LocationState.Fix fixAt(int base, long atMs) {
+        return new LocationState.Fix(buffer.getDouble(base + R_LATITUDE), buffer.getDouble(base + R_LONGITUDE),
+                buffer.getDouble(base + R_ALTITUDE), buffer.getFloat(base + R_SPEED), buffer.getFloat(base + R_BEARING),
+                atMs);
+    }
+
+    private static double lerp(double a, double b, double f) {
+        return a + (b - a) * f;
+    }
+
+    private static double lerpLongitude(double a, double b, double f) {
+        double delta = b - a;
+        if (delta > 180d) {
+            delta -= 360d;
+        } else if (delta < -180d) {
+            delta += 360d;
+        }
+        double value = a + delta * f;
+        return value > 180d ? value - 360d : (value < -180d ? value + 360d : value);
+    }
+}
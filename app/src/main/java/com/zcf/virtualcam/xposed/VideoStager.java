@@ -0,0 +1,227 @@
+package com.zcf.virtualcam.xposed;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 录像开始时在后台把素材预先放到输出文件旁的暂存文件里，结束时只需重命名。
+ * 默认在 stop 中等替换完成（有上限），保证 stop 返回后输出文件已是素材；可选的异步模式只给一个很短的宽限期。
+ */
+final class VideoStager {
+
+    private static final String STAGING_SUFFIX = ".vcstage";
+    private static final long STOP_GRACE_MS = 100L;
+    private static final long STOP_TIMEOUT_MS = 30000L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VirtualCam-stager");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Map<Object, Staging> PENDING =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private VideoStager() {
+    }
+
+    static void stage(@NonNull Object owner, @NonNull File src, @NonNull File output, boolean allowHardLink) {
+        File staged = new File(output.getAbsolutePath() + STAGING_SUFFIX);
+        Future<FileOps.ReplaceResult> future = EXECUTOR.submit(() -> FileOps.stage(src, staged, allowHardLink));
+        discard(PENDING.put(owner, new Staging(src, output, staged, future)));
+    }
+
+    /**
+     * 等暂存完成并重命名到输出路径后再返回，stop() 返回时 App 读到的已是素材。等待以 {@link #STOP_TIMEOUT_MS} 为上限，
+     * 超时后转到后台提交并返回 null；async 为 true（{@code videoAsyncCommit}）时只等 {@link #STOP_GRACE_MS}。
+     * 暂存失败、未暂存或路径变化时改为整份复制，同样排在暂存线程上、受同一上限约束。
+     */
+    @Nullable
+    static FileOps.ReplaceResult commit(@NonNull Object owner, @NonNull File src, @NonNull File output,
+                                        boolean allowHardLink, boolean async) throws IOException {
+        Staging staging = PENDING.remove(owner);
+        if (staging != null && (!staging.src.equals(src) || !staging.output.equals(output))) {
+            discard(staging);
+            staging = null;
+        }
+        if (staging == null) {
+            Logger.log("视频未预暂存，改为整份复制: " + output.getAbsolutePath());
+        }
+        long waitStart = System.nanoTime();
+        CommitTask task = new CommitTask(staging, src, output, allowHardLink);
+        Future<FileOps.ReplaceResult> future = EXECUTOR.submit(task);
+        FileOps.ReplaceResult result;
+        try {
+            result = future.get(async ? STOP_GRACE_MS : STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (task.detach()) {
+                return null;
+            }
+            result = getDone(future);
+        } catch (TimeoutException e) {
+            if (task.detach()) {
+                Logger.log("stop 时视频尚未替换完成，转入后台提交: " + output.getAbsolutePath());
+                return null;
+            }
+            result = getDone(future);
+        } catch (ExecutionException e) {
+            throw asIOException(e);
+        }
+        long waitedNanos = System.nanoTime() - waitStart;
+        if (staging != null) {
+            Logger.log("视频预暂存: " + result + ", stop 等待 " + (waitedNanos / 1000000L) + " ms");
+        }
+        return new FileOps.ReplaceResult(result.tier, result.bytes, waitedNanos);
+    }
+
+    /**
+     * 任务已经跑完、只差把结果交回 Future 时取结果，不受中断影响。
+     */
+    @NonNull
+    private static FileOps.ReplaceResult getDone(@NonNull Future<FileOps.ReplaceResult> future) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw asIOException(e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @NonNull
+    private static IOException asIOException(@NonNull ExecutionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    static void discard(@NonNull Object owner) {
+        discard(PENDING.remove(owner));
+    }
+
+    private static void discard(@Nullable Staging staging) {
+        if (staging == null) {
+            return;
+        }
+        staging.future.cancel(false);
+        EXECUTOR.execute(() -> {
+            if (staging.staged.exists() && !staging.staged.delete()) {
+                Logger.log("暂存文件删除失败: " + staging.staged.getAbsolutePath());
+            }
+        });
+    }
+
+    /**
+     * 排在同一个单线程执行器上，天然位于暂存任务之后；暂存失败或未暂存时整份复制。
+     * 调用方放弃等待后（{@link #detach}）由任务自己记录结果。
+     */
+    private static final class CommitTask implements Callable<FileOps.ReplaceResult> {
+        @Nullable
+        private final Staging staging;
+        @NonNull
+        private final File src;
+        @NonNull
+        private final File output;
+        private final boolean allowHardLink;
+        private boolean detached;
+        private boolean done;
+
+        CommitTask(@Nullable Staging staging, @NonNull File src, @NonNull File output, boolean allowHardLink) {
+            this.staging = staging;
+            this.src = src;
+            this.output = output;
+            this.allowHardLink = allowHardLink;
+        }
+
+        @Override
+        public FileOps.ReplaceResult call() throws IOException {
+            String path = output.getAbsolutePath();
+            try {
+                FileOps.ReplaceResult result = replace();
+                if (finish()) {
+                    Logger.log("后台覆盖视频完成: " + path + " (" + result + ")");
+                }
+                return result;
+            } catch (IOException e) {
+                if (finish()) {
+                    Logger.log("后台覆盖视频失败: " + path + ",", e);
+                }
+                throw e;
+            }
+        }
+
+        @NonNull
+        private FileOps.ReplaceResult replace() throws IOException {
+            if (staging != null) {
+                try {
+                    FileOps.ReplaceResult result = staging.future.get();
+                    FileOps.commit(staging.staged, output);
+                    return result;
+                } catch (CancellationException | ExecutionException | InterruptedException e) {
+                    Logger.log("视频预暂存失败，改为整份复制: " + output.getAbsolutePath());
+                    if (staging.staged.exists() && !staging.staged.delete()) {
+                        Logger.log("暂存文件删除失败: " + staging.staged.getAbsolutePath());
+                    }
+                }
+            }
+            return FileOps.replaceFile(src, output, allowHardLink);
+        }
+
+        private synchronized boolean finish() {
+            done = true;
+            return detached;
+        }
+
+        /**
+         * 任务已结束时返回 false，调用方应直接取结果。
+         */
+        synchronized boolean detach() {
+            if (done) {
+                return false;
+            }
+            detached = true;
+            return true;
+        }
+    }
+
+    private static final class Staging {
+        @NonNull
+        final File src;
+        @NonNull
+        final File output;
+        @NonNull
+        final File staged;
+        @NonNull
+        final Future<FileOps.ReplaceResult> future;
+
+        Staging(@NonNull File src, @NonNull File output, @NonNull File staged, @NonNull Future<FileOps.ReplaceResult> future) {
+            this.src = src;
+            this.output = output;
+            this.staged = staged;
+            this.future = future;
+        }
+    }
+}
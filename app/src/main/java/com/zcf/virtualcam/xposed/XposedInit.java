@@ -1,5 +1,10 @@
 package com.zcf.virtualcam.xposed;
 
+import android.hardware.Camera;
+import android.media.ImageReader;
+import android.media.MediaMuxer;
+import android.media.MediaRecorder;
+
 import de.robv.android.xposed.IXposedHookLoadPackage;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
@@ -14,19 +19,63 @@ public final class XposedInit implements IXposedHookLoadPackage {
             return;
         }
 
+        long start = System.nanoTime();
+        if (!ConfigLoader.mayHookPackage(lpparam.packageName)) {
+            return;
+        }
+        StringBuilder timing = new StringBuilder("启动耗时 ").append(lpparam.packageName);
+        if (lpparam.processName != null && !lpparam.processName.equals(lpparam.packageName)) {
+            timing.append('(').append(lpparam.processName).append(')');
+        }
+        timing.append(':');
+        long mark = step(timing, "门控", start);
+
+        if (lpparam.isFirstApplication) {
+            ConfigLoader.setPackageName(lpparam.packageName);
+        }
         Config config = ConfigLoader.get();
+        mark = step(timing, "读取配置", mark);
         if (!config.isPackageEnabled(lpparam.packageName)) {
             return;
         }
 
         try {
-            Camera1Hook.install();
-            MediaRecorderHook.install();
+            if (config.lazyHooks) {
+                LazyHooks.onFirstCall("Camera1", Camera.class, "open", Camera1Hook::install,
+                        param -> Camera1Hook.onOpened(param.getResult(), param.args));
+                LazyHooks.onFirstCall("Camera2", ImageReader.class, null, Camera2Hook::install, null);
+                LazyHooks.onFirstCall("MediaRecorder", MediaRecorder.class, null, MediaRecorderHook::install, null);
+                LazyHooks.onFirstCall("MediaMuxer", MediaMuxer.class, null, MediaMuxerHook::install,
+                        param -> {
+                            if (!param.hasThrowable()) {
+                                MediaMuxerHook.onCreated(param.thisObject, param.args);
+                            }
+                        });
+                mark = step(timing, "延迟触发", mark);
+            } else {
+                Camera1Hook.install();
+                mark = step(timing, "Camera1", mark);
+                Camera2Hook.install();
+                mark = step(timing, "Camera2", mark);
+                MediaRecorderHook.install();
+                mark = step(timing, "MediaRecorder", mark);
+                MediaMuxerHook.install();
+                mark = step(timing, "MediaMuxer", mark);
+            }
             if (config.enableLocation) {
                 LocationHook.install();
+                step(timing, "Location", mark);
             }
         } catch (Throwable t) {
             Logger.log("安装 Hook 失败:", t);
         }
+        timing.append(" 合计=").append((System.nanoTime() - start) / 1000L).append("µs");
+        Logger.log(timing.toString());
+    }
+
+    private static long step(StringBuilder timing, String name, long since) {
+        long now = System.nanoTime();
+        timing.append(' ').append(name).append('=').append((now - since) / 1000L).append("µs");
+        return now;
     }
 }
@@ -0,0 +1,57 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int allowlistSize;
+
+    private Config config;
+    private String lastPackage;
+    private String missingPackage;
+
+    @Setup
+    public void setUp() {
+        List<String> allowlist = new ArrayList<>(allowlistSize);
+        for (int i = 0; i < allowlistSize; i++) {
+            allowlist.add("com.example.app" + i);
+        }
+        config = Config.builder()
+                .setEnabled(true)
+                .setAllowlist(allowlist)
+                .build();
+        lastPackage = new String("com.example.app" + (allowlistSize - 1));
+        missingPackage = "com.example.other";
+    }
+
+    @Benchmark
+    public boolean isPackageEnabledHit() {
+        return config.isPackageEnabled(lastPackage);
+    }
+
+    @Benchmark
+    public boolean isPackageEnabledMiss() {
+        return config.isPackageEnabled(missingPackage);
+    }
+}
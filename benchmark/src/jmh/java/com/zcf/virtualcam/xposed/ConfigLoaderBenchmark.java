@@ -0,0 +1,82 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigLoaderBenchmark {
+
+    private File snapshotFile;
+    private ConfigSnapshot.Reader reader;
+    private long generation;
+    private Config config;
+
+    @Setup
+    public void setUp() throws IOException {
+        config = Config.builder()
+                .setEnabled(true)
+                .setEnableLocation(true)
+                .setAllowlist(Arrays.asList("com.example.app", "com.example.app.debug"))
+                .setLatitude(31.2304d)
+                .setLongitude(121.4737d)
+                .build();
+        snapshotFile = File.createTempFile("config", ".bin");
+        generation = ConfigSnapshot.write(snapshotFile, config, 0L, -1L);
+        reader = ConfigSnapshot.open(snapshotFile);
+        if (reader == null) {
+            throw new IOException("snapshot not mapped");
+        }
+        ConfigLoader.get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!snapshotFile.delete()) {
+            snapshotFile.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public Config getCached() {
+        return ConfigLoader.get();
+    }
+
+    @Benchmark
+    public Config snapshotGenerationHit() {
+        return reader.generation() == generation ? config : null;
+    }
+
+    @Benchmark
+    public boolean snapshotGateAdmit() {
+        return reader.mayEnable("com.example.app");
+    }
+
+    @Benchmark
+    public boolean snapshotGateReject() {
+        return reader.mayEnable("com.android.systemui");
+    }
+
+    @Benchmark
+    public Config snapshotDecode() {
+        return reader.read(generation);
+    }
+}
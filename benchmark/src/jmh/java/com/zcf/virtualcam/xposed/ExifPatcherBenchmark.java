@@ -0,0 +1,59 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExifPatcherBenchmark {
+
+    @Param({"1048576", "4194304"})
+    public int jpegSize;
+
+    private byte[] jpeg;
+
+    @Setup
+    public void setUp() {
+        jpeg = new byte[jpegSize];
+        new Random(42L).nextBytes(jpeg);
+        int pos = 0;
+        jpeg[pos++] = (byte) 0xFF;
+        jpeg[pos++] = (byte) 0xD8;
+        pos = segment(jpeg, pos, 0xE0, 16);
+        System.arraycopy(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, jpeg, pos + 4, 6);
+        pos = segment(jpeg, pos, 0xE1, 2048);
+        jpeg[pos] = (byte) 0xFF;
+        jpeg[pos + 1] = (byte) 0xDA;
+        jpeg[jpegSize - 2] = (byte) 0xFF;
+        jpeg[jpegSize - 1] = (byte) 0xD9;
+    }
+
+    private static int segment(byte[] buf, int pos, int marker, int length) {
+        buf[pos] = (byte) 0xFF;
+        buf[pos + 1] = (byte) marker;
+        buf[pos + 2] = (byte) (length >> 8);
+        buf[pos + 3] = (byte) length;
+        return pos + 2 + length;
+    }
+
+    @Benchmark
+    public byte[] patchWithGps() {
+        return ExifPatcher.patch(jpeg, 1760000000000L, ExifPatcher.ORIENTATION_NORMAL, true, 31.2304, 121.4737);
+    }
+}
@@ -0,0 +1,125 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileOpsBenchmark {
+
+    private static final int MAX_BYTES = 10 * 1024 * 1024;
+
+    @Param({"1048576", "10485760"})
+    public int fileSize;
+
+    private File file;
+    private String path;
+    private long lastModified;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("photo", ".jpg");
+        path = file.getAbsolutePath();
+        writeRandom(file, fileSize);
+        lastModified = file.lastModified();
+        FileOps.readCachedBytes(path, MAX_BYTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public byte[] readCachedBytesHit() {
+        return FileOps.readCachedBytes(path, MAX_BYTES);
+    }
+
+    @Benchmark
+    public byte[] readCachedBytesStatHit(ExpiredState expired) {
+        return FileOps.readCachedBytes(path, MAX_BYTES);
+    }
+
+    @Benchmark
+    public byte[] readCachedBytesMiss(MissState miss) {
+        return FileOps.readCachedBytes(path, MAX_BYTES);
+    }
+
+    @Benchmark
+    public byte[] readAllBytes() throws IOException {
+        return FileOps.readAllBytes(file, MAX_BYTES);
+    }
+
+    @Benchmark
+    public int mapReadOnly() throws IOException {
+        return FileOps.mapReadOnly(file, MAX_BYTES).remaining();
+    }
+
+    void expireStatCheck() {
+        FileOps.CachedBytes entry = FileOps.readCachedEntry(path, MAX_BYTES);
+        if (entry != null) {
+            entry.checkedAtMs = Long.MIN_VALUE / 2;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExpiredState {
+
+        @Setup(Level.Invocation)
+        public void expire(FileOpsBenchmark bench) {
+            bench.expireStatCheck();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MissState {
+
+        @Setup(Level.Invocation)
+        public void touch(FileOpsBenchmark bench) {
+            bench.expireStatCheck();
+            bench.lastModified += 1000L;
+            if (!bench.file.setLastModified(bench.lastModified)) {
+                throw new IllegalStateException("setLastModified failed");
+            }
+        }
+    }
+
+    static void writeRandom(File file, long size) throws IOException {
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42L).nextBytes(chunk);
+        FileOutputStream fos = new FileOutputStream(file, false);
+        try {
+            long remaining = size;
+            while (remaining > 0) {
+                int n = (int) Math.min(chunk.length, remaining);
+                fos.write(chunk, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            fos.close();
+        }
+    }
+}
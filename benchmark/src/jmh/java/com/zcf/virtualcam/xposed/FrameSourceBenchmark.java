@@ -0,0 +1,84 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrameSourceBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int FRAMES = 30;
+
+    @Param({"y4m", "nv21"})
+    public String format;
+
+    private File file;
+    private FrameSource source;
+    private byte[] out;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("frames", "." + format);
+        int frameSize = WIDTH * HEIGHT * 3 / 2;
+        byte[] frame = new byte[frameSize];
+        new Random(42L).nextBytes(frame);
+        FileOutputStream fos = new FileOutputStream(file, false);
+        try {
+            boolean y4m = FrameSource.FORMAT_Y4M.equals(format);
+            if (y4m) {
+                fos.write(("YUV4MPEG2 W" + WIDTH + " H" + HEIGHT + " F30:1 Ip A1:1 C420jpeg\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+            }
+            for (int i = 0; i < FRAMES; i++) {
+                if (y4m) {
+                    fos.write("FRAME\n".getBytes(StandardCharsets.US_ASCII));
+                }
+                fos.write(frame);
+            }
+        } finally {
+            fos.close();
+        }
+        source = FrameSource.open(file.getAbsolutePath(), format, WIDTH, HEIGHT);
+        if (source == null) {
+            throw new IllegalStateException("open failed");
+        }
+        out = new byte[frameSize];
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public byte[] copyNv21() {
+        source.copyNv21(index++, out);
+        return out;
+    }
+}
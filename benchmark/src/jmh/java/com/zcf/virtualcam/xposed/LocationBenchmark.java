@@ -0,0 +1,57 @@
+package com.zcf.virtualcam.xposed;
+
+import android.location.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocationBenchmark {
+
+    private Config config;
+    private LocationState active;
+    private Location target;
+
+    @Setup
+    public void setUp() {
+        config = Config.builder()
+                .setEnabled(true)
+                .setEnableLocation(true)
+                .setLatitude(31.2304d)
+                .setLongitude(121.4737d)
+                .build();
+        active = LocationHook.resolveState(config);
+        target = new Location("network");
+    }
+
+    @Benchmark
+    public Object getterLatitude() {
+        LocationState state = LocationHook.resolveState(config);
+        return state != null ? state.fix().latitudeValue : null;
+    }
+
+    @Benchmark
+    public Location buildLocationInPlace() {
+        return LocationHook.buildLocationInPlace(target, active);
+    }
+
+    @Benchmark
+    public Location buildLocationFromTemplate() {
+        return LocationHook.buildLocationInPlace(null, active);
+    }
+}
@@ -0,0 +1,86 @@
+package com.zcf.virtualcam.xposed;
+
+import android.location.Location;
+import android.location.LocationListener;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压力场景：数百个监听器以 10–100Hz 注册，每次调用推进一个 tick（10ms 模拟时间）并同步送达。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocationSchedulerBenchmark {
+
+    @Param({"100", "500"})
+    public int listeners;
+
+    private LocationScheduler scheduler;
+    private LocationState active;
+    private long now;
+    private long received;
+
+    @Setup
+    public void setUp() {
+        Config config = Config.builder()
+                .setEnabled(true)
+                .setEnableLocation(true)
+                .setLatitude(31.2304d)
+                .setLongitude(121.4737d)
+                .build();
+        active = LocationHook.resolveState(config);
+        scheduler = new LocationScheduler(null);
+        Executor direct = Runnable::run;
+        Random random = new Random(42L);
+        for (int i = 0; i < listeners; i++) {
+            long intervalMs = 10L + random.nextInt(91);
+            scheduler.request(new CountingListener(), intervalMs, 0f, null, direct, false);
+        }
+        now = SystemClock.uptimeMillis();
+    }
+
+    @Benchmark
+    public int tick() {
+        now += LocationScheduler.TICK_MS;
+        return scheduler.tick(now, active);
+    }
+
+    private final class CountingListener implements LocationListener {
+        @Override
+        public void onLocationChanged(Location location) {
+            received += location.getTime();
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplaceFileBenchmark {
+
+    @Param({"10", "100", "1024"})
+    public int sizeMb;
+
+    @Param({"true", "false"})
+    public boolean hardLink;
+
+    private File dir;
+    private File src;
+    private File dst;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("replace", "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("mkdir failed: " + dir);
+        }
+        src = new File(dir, "video.mp4");
+        dst = new File(dir, "output.mp4");
+        FileOpsBenchmark.writeRandom(src, sizeMb * 1024L * 1024L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.delete()) {
+                    f.deleteOnExit();
+                }
+            }
+        }
+        if (!dir.delete()) {
+            dir.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public FileOps.ReplaceResult replaceFile() throws IOException {
+        return FileOps.replaceFile(src, dst, hardLink);
+    }
+
+    @Benchmark
+    public File copyFile() throws IOException {
+        FileOps.copyFile(src, dst);
+        return dst;
+    }
+}
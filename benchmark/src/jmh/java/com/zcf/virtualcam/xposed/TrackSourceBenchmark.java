@@ -0,0 +1,86 @@
+package com.zcf.virtualcam.xposed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrackSourceBenchmark {
+
+    @Param({"1000", "2000000"})
+    public int points;
+
+    private File csv;
+    private File compiled;
+    private TrackSource source;
+    private long[] probes;
+    private int probe;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = File.createTempFile("track", ".csv");
+        compiled = TrackImporter.compiledFileFor(csv);
+        Random random = new Random(42L);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8));
+        try {
+            writer.write("time,lat,lng,alt\n");
+            double lat = 31.2304d;
+            double lng = 121.4737d;
+            for (int i = 0; i < points; i++) {
+                lat += (random.nextDouble() - 0.5d) * 1e-4;
+                lng += (random.nextDouble() - 0.5d) * 1e-4;
+                writer.write(i + "," + lat + "," + lng + ",10\n");
+            }
+        } finally {
+            writer.close();
+        }
+        TrackImporter.compile(csv, compiled);
+        source = TrackSource.open(csv.getAbsolutePath(), compiled, csv.lastModified());
+        if (source == null) {
+            throw new IOException("track not mapped");
+        }
+        probes = new long[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = (long) (random.nextDouble() * source.durationMs * 1.5d);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!csv.delete()) {
+            csv.deleteOnExit();
+        }
+        if (!compiled.delete()) {
+            compiled.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public LocationState.Fix sample() {
+        long elapsed = probes[probe++ & (probes.length - 1)];
+        return source.sample(elapsed, true, elapsed);
+    }
+}
@@ -0,0 +1,6 @@
+package android.content;
+
+public abstract class Context {
+
+    public abstract ContentResolver getContentResolver();
+}
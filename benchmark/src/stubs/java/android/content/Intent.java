@@ -0,0 +1,8 @@
+package android.content;
+
+public class Intent {
+
+    public <T> T getParcelableExtra(String name) {
+        return null;
+    }
+}
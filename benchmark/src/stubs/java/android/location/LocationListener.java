@@ -0,0 +1,25 @@
+package android.location;
+
+import android.os.Bundle;
+
+import java.util.List;
+
+public interface LocationListener {
+
+    void onLocationChanged(Location location);
+
+    default void onLocationChanged(List<Location> locations) {
+        for (Location location : locations) {
+            onLocationChanged(location);
+        }
+    }
+
+    default void onFlushComplete(int requestCode) {
+    }
+
+    void onStatusChanged(String provider, int status, Bundle extras);
+
+    void onProviderEnabled(String provider);
+
+    void onProviderDisabled(String provider);
+}
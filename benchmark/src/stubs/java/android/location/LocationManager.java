@@ -0,0 +1,7 @@
+package android.location;
+
+public class LocationManager {
+
+    public static final String KEY_LOCATION_CHANGED = "location";
+    public static final String KEY_LOCATIONS = "locations";
+}
@@ -0,0 +1,12 @@
+package android.location;
+
+public final class LocationRequest {
+
+    public long getIntervalMillis() {
+        return 0L;
+    }
+
+    public float getMinUpdateDistanceMeters() {
+        return 0f;
+    }
+}
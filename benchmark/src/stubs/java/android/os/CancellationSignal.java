@@ -0,0 +1,8 @@
+package android.os;
+
+public final class CancellationSignal {
+
+    public boolean isCanceled() {
+        return false;
+    }
+}
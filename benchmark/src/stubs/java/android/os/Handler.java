@@ -0,0 +1,19 @@
+package android.os;
+
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return false;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+public final class Looper {
+
+    private Looper() {
+    }
+
+    public static Looper myLooper() {
+        return null;
+    }
+
+    public static Looper getMainLooper() {
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package android.provider;
+
+public final class Settings {
+
+    public static final class Secure {
+    }
+}
@@ -0,0 +1,54 @@
+package android.system;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public final class Os {
+
+    private Os() {
+    }
+
+    public static StructStat stat(String path) throws ErrnoException {
+        try {
+            Map<String, Object> a = Files.readAttributes(Paths.get(path), "unix:dev,ino,mode,nlink,size,lastModifiedTime");
+            long nanos = ((FileTime) a.get("lastModifiedTime")).to(TimeUnit.NANOSECONDS);
+            return new StructStat(
+                    ((Number) a.get("dev")).longValue(),
+                    ((Number) a.get("ino")).longValue(),
+                    ((Number) a.get("mode")).intValue(),
+                    ((Number) a.get("nlink")).longValue(),
+                    ((Number) a.get("size")).longValue(),
+                    new StructTimespec(nanos / 1000000000L, nanos % 1000000000L));
+        } catch (NoSuchFileException e) {
+            throw new ErrnoException("stat", OsConstants.ENOENT);
+        } catch (IOException e) {
+            throw new ErrnoException("stat", OsConstants.EIO);
+        }
+    }
+
+    public static void link(String oldPath, String newPath) throws ErrnoException {
+        try {
+            Files.createLink(Paths.get(newPath), Paths.get(oldPath));
+        } catch (FileAlreadyExistsException e) {
+            throw new ErrnoException("link", OsConstants.EEXIST);
+        } catch (NoSuchFileException e) {
+            throw new ErrnoException("link", OsConstants.ENOENT);
+        } catch (IOException e) {
+            throw new ErrnoException("link", OsConstants.EXDEV);
+        }
+    }
+
+    public static String readlink(String path) throws ErrnoException {
+        try {
+            return Files.readSymbolicLink(Paths.get(path)).toString();
+        } catch (IOException e) {
+            throw new ErrnoException("readlink", OsConstants.EIO);
+        }
+    }
+}
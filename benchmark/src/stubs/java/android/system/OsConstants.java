@@ -0,0 +1,18 @@
+package android.system;
+
+public final class OsConstants {
+
+    public static final int ENOENT = 2;
+    public static final int EIO = 5;
+    public static final int EEXIST = 17;
+    public static final int EXDEV = 18;
+    public static final int S_IFMT = 0170000;
+    public static final int S_IFREG = 0100000;
+
+    private OsConstants() {
+    }
+
+    public static boolean S_ISREG(int mode) {
+        return (mode & S_IFMT) == S_IFREG;
+    }
+}
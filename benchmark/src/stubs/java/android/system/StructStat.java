@@ -0,0 +1,22 @@
+package android.system;
+
+public final class StructStat {
+
+    public final long st_dev;
+    public final long st_ino;
+    public final int st_mode;
+    public final long st_nlink;
+    public final long st_size;
+    public final long st_mtime;
+    public final StructTimespec st_mtim;
+
+    public StructStat(long st_dev, long st_ino, int st_mode, long st_nlink, long st_size, StructTimespec st_mtim) {
+        this.st_dev = st_dev;
+        this.st_ino = st_ino;
+        this.st_mode = st_mode;
+        this.st_nlink = st_nlink;
+        this.st_size = st_size;
+        this.st_mtime = st_mtim.tv_sec;
+        this.st_mtim = st_mtim;
+    }
+}
@@ -0,0 +1,12 @@
+package android.system;
+
+public final class StructTimespec {
+
+    public final long tv_sec;
+    public final long tv_nsec;
+
+    public StructTimespec(long tv_sec, long tv_nsec) {
+        this.tv_sec = tv_sec;
+        this.tv_nsec = tv_nsec;
+    }
+}
@@ -0,0 +1,13 @@
+package android.util;
+
+import org.xmlpull.v1.XmlPullParser;
+
+public final class Xml {
+
+    private Xml() {
+    }
+
+    public static XmlPullParser newPullParser() {
+        throw new UnsupportedOperationException("GPX import is not available in the benchmark stubs");
+    }
+}
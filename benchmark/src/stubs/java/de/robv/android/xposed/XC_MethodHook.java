@@ -0,0 +1,38 @@
+package de.robv.android.xposed;
+
+public abstract class XC_MethodHook {
+
+    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+    }
+
+    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+    }
+
+    public static final class MethodHookParam {
+        public Object thisObject;
+        public Object[] args;
+        private Object result;
+        private Throwable throwable;
+
+        public Object getResult() {
+            return result;
+        }
+
+        public void setResult(Object result) {
+            this.result = result;
+            this.throwable = null;
+        }
+
+        public Throwable getThrowable() {
+            return throwable;
+        }
+
+        public boolean hasThrowable() {
+            return throwable != null;
+        }
+
+        public void setThrowable(Throwable throwable) {
+            this.throwable = throwable;
+        }
+    }
+}